@@ -1,6 +1,8 @@
 package es.udc.rgen;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
 import org.apache.hadoop.io.compress.CompressionCodec;
 
 public class DataOptions {
@@ -13,6 +15,9 @@ public class DataOptions {
 	public static final double LINK_ZIPF_EXPONENT = 0.5;
 	public static final double WORD_ZIPF_EXPONENT = 0.9;
 
+	/* global seed, records are seeded from it and their id when set */
+	public static final String SEED = "rgen.seed";
+
 	private static final String TEMP_DIR = "temp";
 	private static final int NUM_LINUX_DICT_WORD = 479623;
 
@@ -30,6 +35,12 @@ public class DataOptions {
 	
 	private boolean sequenceOut;
 	private Class<? extends CompressionCodec> codecClass;
+	private Class<? extends CompressionCodec> workCodecClass, shuffleCodecClass;
+	private CompressionType compressionType;
+	private long blockSize;
+	private short replication;
+	private Long seed;
+	private boolean append;
 	
 	private StringBuffer remainArgs;
 
@@ -43,6 +54,13 @@ public class DataOptions {
 		words = -1;
 		sequenceOut = false;
 		codecClass = null;
+		workCodecClass = null;
+		shuffleCodecClass = null;
+		compressionType = CompressionType.BLOCK;
+		blockSize = -1;
+		replication = -1;
+		seed = null;
+		append = false;
 		remainArgs = new StringBuffer("");
 
 		if (args.length < 2) {
@@ -100,8 +118,27 @@ public class DataOptions {
 					sequenceOut = true;
 				}
 			} else if ("-c".equals(args[i])) {
-				codecClass =
-						Class.forName(args[++i]).asSubclass(CompressionCodec.class);
+				codecClass = getCodec(args[++i]);
+			} else if ("-ci".equals(args[i])) {
+				workCodecClass = getCodec(args[++i]);
+			} else if ("-cs".equals(args[i])) {
+				shuffleCodecClass = getCodec(args[++i]);
+			} else if ("-ct".equals(args[i])) {
+				String type = args[++i].toUpperCase();
+				// NONE is left out, compression is only turned on by -c
+				if ("BLOCK".equals(type) || "RECORD".equals(type)) {
+					compressionType = CompressionType.valueOf(type);
+				} else {
+					System.exit(printUsage("Error: compression type should be BLOCK or RECORD!!!"));
+				}
+			} else if ("-bs".equals(args[i])) {
+				blockSize = parseHumanLong(args[++i]);
+			} else if ("-rep".equals(args[i])) {
+				replication = Short.parseShort(args[++i]);
+			} else if ("-seed".equals(args[i])) {
+				seed = Long.parseLong(args[++i]);
+			} else if ("-append".equals(args[i])) {
+				append = true;
 			} else if (args[i].length()>0) {
 				remainArgs.append(args[i]).append(" ");
 			}
@@ -118,6 +155,37 @@ public class DataOptions {
 		workPath = new Path(base, TEMP_DIR);
 	}
 	
+	/***
+	 * Codec class of a short name, as the codecs shipped with Hadoop are
+	 * named, or of a class name. lz4, snappy and zstd need the native
+	 * hadoop library, and zstd a Hadoop release that has it.
+	 */
+	private static Class<? extends CompressionCodec> getCodec(String name)
+			throws ClassNotFoundException {
+		String pkg = "org.apache.hadoop.io.compress.";
+		String cname = name;
+		if ("default".equalsIgnoreCase(name)) {
+			cname = pkg + "DefaultCodec";
+		} else if ("deflate".equalsIgnoreCase(name)) {
+			cname = pkg + "DeflateCodec";
+		} else if ("gzip".equalsIgnoreCase(name)) {
+			cname = pkg + "GzipCodec";
+		} else if ("bzip2".equalsIgnoreCase(name)) {
+			cname = pkg + "BZip2Codec";
+		} else if ("lz4".equalsIgnoreCase(name)) {
+			cname = pkg + "Lz4Codec";
+		} else if ("snappy".equalsIgnoreCase(name)) {
+			cname = pkg + "SnappyCodec";
+		} else if ("zstd".equalsIgnoreCase(name)) {
+			cname = pkg + "ZStandardCodec";
+		}
+		try {
+			return Class.forName(cname).asSubclass(CompressionCodec.class);
+		} catch (ClassNotFoundException e) {
+			throw new ClassNotFoundException("Codec " + name + " not found in this Hadoop", e);
+		}
+	}
+	
 	private long parseHumanLong(String str) {
 		char tail = str.charAt(str.length() - 1);
 		long base = 1;
@@ -144,6 +212,13 @@ public class DataOptions {
 	
 	private void checkOptions() {
 		
+		if (append && DataType.HIVE != type && DataType.PAGERANK != type && DataType.NUTCH != type) {
+			System.exit(printUsage("Error: only hive, pagerank and nutch data can be appended!!!"));
+		}
+		if (append && DataType.NUTCH == type && null == seed) {
+			System.exit(printUsage("Error: appending nutch data needs the -seed of the data!!!"));
+		}
+
 		switch (type) {
 		case RANDOMTEXT:
 			if (pages<=0) {
@@ -211,6 +286,16 @@ public class DataOptions {
 		}
 		
 		System.out.println("OPTIONS:");
+		System.out.println("[-seed <seed>] with any data type generates each record from the seed "
+				+ "and its id, the same data for any -m and -r");
+		System.out.println("[-append] with hive, pagerank and nutch adds the pages and visits up to "
+				+ "-p and -v to the data in the result path");
+		System.out.println("[-c <codec>] [-ci <codec>] [-cs <codec>] compress the final outputs, the "
+				+ "intermediate ones in the work path and the shuffle, with a codec of "
+				+ "default|deflate|gzip|bzip2|lz4|snappy|zstd or a class name");
+		System.out.println("[-ct <BLOCK|RECORD>] compression type of sequence files, BLOCK by default");
+		System.out.println("[-bs <block size>] [-rep <replication>] HDFS block size and replication "
+				+ "of the final outputs\n");
 		
 		System.out.println("RANDOM TEXT WRITER:");
 		System.out.println("-t randomtext -p <bytes> [-outFormat <class>] "
@@ -224,7 +309,7 @@ public class DataOptions {
 		
 		System.out.println("LDA TEXT:");
 		System.out.println("-t ldatext -i <input_model> [-p <bytes>] "
-				+ "[-l <lines>] [-wl <~words/line>] "
+				+ "[-l <lines>] [-wl <~words/line>] [-seed <seed>] [-vectors] [-topk <terms>] "
 				+ "[-b <base path>] [-n <data name>] "
 				+ "[-m <num maps>]\n");
 		
@@ -316,4 +401,49 @@ public class DataOptions {
 	public Class<? extends CompressionCodec> getCodecClass() {
 		return codecClass;
 	}
+	
+	public Class<? extends CompressionCodec> getWorkCodecClass() {
+		return workCodecClass;
+	}
+	
+	public Class<? extends CompressionCodec> getShuffleCodecClass() {
+		return shuffleCodecClass;
+	}
+	
+	public CompressionType getCompressionType() {
+		return compressionType;
+	}
+	
+	public long getBlockSize() {
+		return blockSize;
+	}
+	
+	public short getReplication() {
+		return replication;
+	}
+	
+	public boolean hasSeed() {
+		return null != seed;
+	}
+	
+	public long getSeed() {
+		return seed;
+	}
+	
+	/***
+	 * Pass the global seed, if any, to the tasks of job.
+	 */
+	public void shareSeed(Configuration job) {
+		if (null != seed) {
+			job.setLong(SEED, seed);
+		}
+	}
+	
+	public boolean isAppend() {
+		return append;
+	}
+	
+	public static boolean isSeeded(Configuration job) {
+		return null != job.get(SEED);
+	}
 }
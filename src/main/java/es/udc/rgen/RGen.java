@@ -7,6 +7,7 @@ import org.apache.hadoop.util.ToolRunner;
 
 import es.udc.rgen.graph.KroneckerGraph;
 import es.udc.rgen.graph.PagerankData;
+import es.udc.rgen.misc.RunReport;
 import es.udc.rgen.table.HiveData;
 import es.udc.rgen.table.KMeans;
 import es.udc.rgen.table.NutchData;
@@ -72,6 +73,7 @@ public class RGen extends Configured implements Tool {
 			default:
 				break;
 		}
+		RunReport.write(options);
 		return 0;
 	}
 
@@ -12,7 +12,6 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapred.FileInputFormat;
 import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
@@ -23,11 +22,15 @@ import org.apache.hadoop.mapred.Reducer;
 import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.mapred.SequenceFileOutputFormat;
 import org.apache.hadoop.mapred.TextOutputFormat;
-import org.apache.hadoop.mapred.lib.NLineInputFormat;
 
 import es.udc.rgen.*;
 import es.udc.rgen.misc.Cell;
-import es.udc.rgen.misc.Dummy;
+import es.udc.rgen.misc.Counters;
+import es.udc.rgen.misc.GenStats;
+import es.udc.rgen.misc.RunReport;
+import es.udc.rgen.misc.SlotRangeInputFormat;
+import es.udc.rgen.misc.SlotRangeSplit;
+import es.udc.rgen.misc.SplitMix64;
 import es.udc.rgen.misc.Utils;
 
 public class KroneckerGraph {
@@ -62,8 +65,6 @@ public class KroneckerGraph {
 	
 	private static final Random random = new Random(System.currentTimeMillis());
 
-	private Dummy dummy;
-
 	public KroneckerGraph (DataOptions options) {
 		this.options = options;
 		parseArgs(options.getRemainArgs());
@@ -136,8 +137,6 @@ public class KroneckerGraph {
 		
 		Utils.checkHdfsPath(options.getResultPath(), true);
 		Utils.checkHdfsPath(options.getWorkPath(), true);
-
-		dummy = new Dummy(options.getWorkPath(), options.getNumMaps());
 	}
 
 	private void setKroneckerNodesOptions(JobConf job) {
@@ -161,6 +160,7 @@ public class KroneckerGraph {
 		
 		long nodes_map = (long) Math.ceil(nodes * 1.0 / options.getNumMaps());
 		job.setLong(NODES_PER_MAP, nodes_map);
+		SlotRangeInputFormat.setSlots(job, options.getNumMaps(), nodes);
 		
 		job.setInt(ITERATIONS, k);
 	}
@@ -179,64 +179,48 @@ public class KroneckerGraph {
 		
 		long edges_map = (long) Math.ceil(edges * 1.0 / options.getNumMaps());
 		job.setLong(EDGES_PER_MAP, edges_map);
+		SlotRangeInputFormat.setSlots(job, options.getNumMaps(), edges);
+		options.shareSeed(job);
 		
 		job.set(DELIMETER, cdelim);
 		
 		job.setInt(ITERATIONS, k);
 	}
-	
-	public static long[] getRange(int slotId, long limit, long slotlimit) {
-		long[] range = new long[2];
-		range[0] = slotlimit * (slotId - 1);
-		range[1] = range[0] + slotlimit;
-		if (range[1] > limit) {
-			range[1] = limit;
-		}
-		return range;
-	}
 
 	public static class DummyToNodesMapper extends MapReduceBase implements
-	Mapper<LongWritable, Text, LongWritable, Text> {
-		
-		private long nodes, nodes_map;
-
-		private void getOptions(JobConf job) {
-			nodes = job.getLong(NUM_NODES, 0);
-			nodes_map = job.getLong(NODES_PER_MAP, 0);
-		}
+	Mapper<LongWritable, SlotRangeSplit, LongWritable, Text> {
 
 		@Override
-		public void configure(JobConf job) {
-			getOptions(job);
-		}
-
-		@Override
-		public void map(LongWritable key, Text value,
+		public void map(LongWritable key, SlotRangeSplit value,
 				OutputCollector<LongWritable, Text> output, Reporter reporter) throws IOException {
 	
-			int slotId = Integer.parseInt(value.toString().trim());
-			long[] range = KroneckerGraph.getRange(slotId, nodes, nodes_map);
+			long[] range = value.getRange();
 			
+			GenStats stats = new GenStats();
 			for (long i=range[0]; i<range[1]; i++) {
 				key.set(i);
 				Text v = new Text(Long.toString(i));
 				output.collect(key, v);
+				stats.record(8+v.getLength());
 			}
+			stats.flush(reporter);
 		}
 	}
 	
 	public static class DummyToEdgesMapper extends MapReduceBase implements
-	Mapper<LongWritable, Text, Cell, IntWritable> {
+	Mapper<LongWritable, SlotRangeSplit, Cell, IntWritable> {
 
 		private int k, seed_matrix_dim;
-		private long edges_map, nodes;
+		private long nodes, seed;
+		private boolean seeded;
 		private double seed_matrix_sum;
 		
 		private Cell probMatrix[];
 
 		private void getOptions(JobConf job) {
 			nodes = job.getLong(NUM_NODES, 0);
-			edges_map = job.getLong(EDGES_PER_MAP, 0);
+			seeded = DataOptions.isSeeded(job);
+			seed = job.getLong(DataOptions.SEED, 0);
 			k = job.getInt(ITERATIONS, 0);
 			seed_matrix_dim = job.getInt(SEED_MATRIX_DIMENSION, 0);
 			seed_matrix_sum = job.getDouble(SEED_MATRIX_SUM, 0);
@@ -262,15 +246,23 @@ public class KroneckerGraph {
 			getOptions(job);
 		}
 	
-		public void map(LongWritable key, Text value, OutputCollector<Cell, IntWritable> output,
+		public void map(LongWritable key, SlotRangeSplit value, OutputCollector<Cell, IntWritable> output,
 				Reporter reporter) throws IOException{
 			
 			long rng=0,row=0,col=0,auxRow=0,auxCol=0;
 			int n=0;
 			double prob=0;
 
-			for (int edges=0;edges<edges_map;edges++) {
+			// with a global seed every edge id draws from a stream of its own
+			Random random = seeded ? new Random() : KroneckerGraph.random;
+			long[] range = value.getRange();
+			GenStats stats = new GenStats();
+			for (long edge=range[0]; edge<range[1]; edge++) {
+				long t = stats.start();
 				
+				if (seeded) {
+					random.setSeed(SplitMix64.mix(seed, edge));
+				}
 				rng=nodes; row=0; col=0;
 				
 				for (int iter=0;iter<k;iter++) {
@@ -288,19 +280,33 @@ public class KroneckerGraph {
 				}
 				
 				Cell cell = new Cell(0,row,col);
+				t = stats.lap(Counters.GENERATE_NANOS, t);
 				
 				output.collect(cell, new IntWritable(1));
+				t = stats.lap(Counters.WRITE_NANOS, t);
 			}
+			stats.add(Counters.RANDOM_DRAWS, (range[1] - range[0]) * k);
+			stats.flush(reporter);
 		}
 	}
 	
 	public static class EdgesReducer extends MapReduceBase implements
 	Reducer<Cell, IntWritable, LongWritable, LongWritable> {
 
+		private GenStats stats = new GenStats();
+		private Reporter reporter;
+
 		@Override
 		public void reduce(Cell key, Iterator<IntWritable> values, OutputCollector<LongWritable, LongWritable> output,
 				Reporter reporter) throws IOException {
+			this.reporter = reporter;
 			output.collect(new LongWritable(key.getRow()),new LongWritable(key.getCol()));
+			stats.record(16);
+		}
+
+		@Override
+		public void close() {
+			stats.flush(reporter);
 		}
 	}
 
@@ -319,8 +325,7 @@ public class KroneckerGraph {
 		job.setOutputKeyClass(IntWritable.class);
 		job.setOutputValueClass(Text.class);
 		
-		FileInputFormat.setInputPaths(job, dummy.getPath());
-		job.setInputFormat(NLineInputFormat.class);
+		job.setInputFormat(SlotRangeInputFormat.class);
 		
 		job.setMapOutputKeyClass(Text.class);
 		job.setMapperClass(DummyToNodesMapper.class);
@@ -331,6 +336,7 @@ public class KroneckerGraph {
 		} else {
 			job.setOutputFormat(TextOutputFormat.class);
 		}
+		Utils.setFinalOutput(options, job);
 		FileOutputFormat.setOutputPath(job, fout);
 
 		log.info("Nodes will be created: "+job.get(NUM_NODES), null);
@@ -338,11 +344,11 @@ public class KroneckerGraph {
 		log.info("K iterations: "+job.get(ITERATIONS),null);
 		
 		log.info("Running Job: " +jobname);
-		log.info("Dummy file " + dummy.getPath() + " as input");
+		log.info(options.getNumMaps() + " slots as input");
 		log.info("Vertices file " + fout + " as output");
 		Date startTime = new Date();
 	    log.info("Job started: " + startTime);
-		JobClient.runJob(job);
+		RunReport.add(JobClient.runJob(job));
 		Date endTime = new Date();
 	    log.info("Job ended: " + endTime);
 	    log.info("The job took " + 
@@ -366,8 +372,7 @@ public class KroneckerGraph {
 		job.setOutputKeyClass(Cell.class);
 		job.setOutputValueClass(Text.class);
 		
-		FileInputFormat.setInputPaths(job, dummy.getPath());
-		job.setInputFormat(NLineInputFormat.class);
+		job.setInputFormat(SlotRangeInputFormat.class);
 
 		job.setMapperClass(DummyToEdgesMapper.class);
 		job.setReducerClass(EdgesReducer.class);
@@ -386,6 +391,7 @@ public class KroneckerGraph {
 		} else {
 			job.setOutputFormat(TextOutputFormat.class);
 		}
+		Utils.setFinalOutput(options, job);
 		
 		FileOutputFormat.setOutputPath(job, fout);
 		
@@ -397,11 +403,11 @@ public class KroneckerGraph {
 		
 		
 		log.info("Running Job: " +jobname);
-		log.info("Dummy file " + dummy.getPath() + " as input");
+		log.info(options.getNumMaps() + " slots as input");
 		log.info("Edges file " + fout + " as output");
 		Date startTime = new Date();
 	    log.info("Job started: " + startTime);
-		JobClient.runJob(job);
+		RunReport.add(JobClient.runJob(job));
 		Date endTime = new Date();
 	    log.info("Job ended: " + endTime);
 	    log.info("The job took " + 
@@ -10,7 +10,6 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapred.FileInputFormat;
 import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
@@ -21,10 +20,14 @@ import org.apache.hadoop.mapred.Reducer;
 import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.mapred.SequenceFileOutputFormat;
 import org.apache.hadoop.mapred.TextOutputFormat;
-import org.apache.hadoop.mapred.lib.NLineInputFormat;
 
-import es.udc.rgen.misc.Dummy;
+import es.udc.rgen.misc.Counters;
+import es.udc.rgen.misc.GenInfo;
+import es.udc.rgen.misc.GenStats;
 import es.udc.rgen.misc.HtmlCore;
+import es.udc.rgen.misc.RunReport;
+import es.udc.rgen.misc.SlotRangeInputFormat;
+import es.udc.rgen.misc.SlotRangeSplit;
 import es.udc.rgen.misc.Utils;
 import es.udc.rgen.*;
 
@@ -35,6 +38,7 @@ public class PagerankData {
 	public static final String DELIMETER = "mapreduce.output.textoutputformat.separator";
 	
 	private DataOptions options;
+	private GenInfo info;
 
 	private static final String NODES_DIR_NAME = "nodes";
 	private static final String EDGES_DIR_NAME = "edges";	
@@ -42,8 +46,6 @@ public class PagerankData {
 
 	private String cdelim = "\t";
 
-	private Dummy dummy;
-
 	public PagerankData(DataOptions options) {
 		this.options = options;
 		parseArgs(options.getRemainArgs());
@@ -67,41 +69,48 @@ public class PagerankData {
 		
 		log.info("Initializing PageRank data generator...");
 		
-		Utils.checkHdfsPath(options.getResultPath(), true);
+		if (options.isAppend()) {
+			info = GenInfo.read(options.getResultPath());
+			info.checkAppend(options);
+			if (options.getNumPages() <= info.getPages()) {
+				throw new IOException("Pagerank data already has " + info.getPages() + " pages");
+			}
+		} else {
+			info = new GenInfo();
+			Utils.checkHdfsPath(options.getResultPath(), true);
+		}
 		Utils.checkHdfsPath(options.getWorkPath(), true);
 
+		// links of the new pages follow the zipf of all of them
 		Utils.serialLinkZipf(options);
-
-		dummy = new Dummy(options.getWorkPath(), options.getNumMaps());
 	}
 
 	private void setPageRankNodesOptions(JobConf job) {
 		job.setLong("pages", options.getNumPages());
 		job.setLong("slotpages", options.getNumSlotPages());
+		SlotRangeInputFormat.setSlots(job, options.getNumMaps(), options.getNumPages());
+		SlotRangeInputFormat.setOffset(job, info.getPages(), info.getSlots());
 	}
 	
 	private void setPageRankLinksOptions(JobConf job) throws URISyntaxException {
 		job.setLong("pages", options.getNumPages());
 		job.setLong("slotpages", options.getNumSlotPages());
 		job.set(DELIMETER, cdelim);
+		SlotRangeInputFormat.setSlots(job, options.getNumMaps(), options.getNumPages());
+		SlotRangeInputFormat.setOffset(job, info.getPages(), info.getSlots());
+		options.shareSeed(job);
 		
 		Utils.shareLinkZipfCore(options, job);
 	}
 	
 	public static class BalancedLinkNodesMapper extends MapReduceBase implements
-	Mapper<LongWritable, Text, LongWritable, NullWritable> {
+	Mapper<LongWritable, SlotRangeSplit, LongWritable, NullWritable> {
 
 		@Override
-		public void map(LongWritable key, Text value,
+		public void map(LongWritable key, SlotRangeSplit value,
 				OutputCollector<LongWritable, NullWritable> output, Reporter reporter) throws IOException {
 	
-			String delimiter = "[ \t]";
-			String[] pair = value.toString().split(delimiter);
-			
-			output.collect(
-					new LongWritable(Long.parseLong(pair[0])),
-					NullWritable.get()
-					);
+			output.collect(new LongWritable(value.getSlot()), NullWritable.get());
 		}
 	}
 
@@ -118,33 +127,31 @@ public class PagerankData {
 	}
 
 	public static class DummyToNodesMapper extends MapReduceBase implements
-	Mapper<LongWritable, Text, LongWritable, Text> {
+	Mapper<LongWritable, SlotRangeSplit, LongWritable, Text> {
 		
-		private long pages, slotpages;
-
-		private void getOptions(JobConf job) {
-			pages = job.getLong("pages", 0);
-			slotpages = job.getLong("slotpages", 0);
-		}
+		private GenStats stats;
 
 		@Override
 		public void configure(JobConf job) {
-			getOptions(job);
+			stats = new GenStats();
 		}
 
 		@Override
-		public void map(LongWritable key, Text value,
+		public void map(LongWritable key, SlotRangeSplit value,
 				OutputCollector<LongWritable, Text> output, Reporter reporter) throws IOException {
 	
-			int slotId = Integer.parseInt(value.toString().trim());
-			long[] range = HtmlCore.getPageRange(slotId, pages, slotpages);
+			long[] range = value.getRange();
 			
 			for (long i=range[0]; i<range[1]; i++) {
+				long t = stats.start();
 				key.set(i);
 				Text v = new Text(Long.toString(i));
+				t = stats.lap(Counters.ENCODE_NANOS, t);
 				output.collect(key, v);
-				reporter.incrCounter(es.udc.rgen.misc.Counters.BYTES_DATA_GENERATED, 8+v.getLength());
+				t = stats.lap(Counters.WRITE_NANOS, t);
+				stats.record(8+v.getLength());
 			}
+			stats.flush(reporter);
 		}
 	}
 
@@ -152,7 +159,7 @@ public class PagerankData {
 
 		log.info("Creating Pagerank nodes...", null);
 
-		Path fout = new Path(options.getResultPath(), NODES_DIR_NAME);
+		Path fout = info.getOutputPath(options, NODES_DIR_NAME);
 		
 		JobConf job = new JobConf(PagerankData.class);
 		String jobname = "Create pagerank nodes";
@@ -163,8 +170,7 @@ public class PagerankData {
 		job.setOutputKeyClass(LongWritable.class);
 		job.setOutputValueClass(Text.class);
 		
-		FileInputFormat.setInputPaths(job, dummy.getPath());
-		job.setInputFormat(NLineInputFormat.class);
+		job.setInputFormat(SlotRangeInputFormat.class);
 		
 		if (balance) {
 			job.setMapOutputKeyClass(LongWritable.class);
@@ -191,31 +197,27 @@ public class PagerankData {
 			job.setOutputFormat(TextOutputFormat.class);
 		}
 		
-		if (null != options.getCodecClass()) {
-			job.set("mapred.output.compression.type","BLOCK");
-			job.set("mapreduce.output.fileoutputformat.compress.type","BLOCK");
-			FileOutputFormat.setCompressOutput(job, true);
-			FileOutputFormat.setOutputCompressorClass(job, options.getCodecClass());
-		}
+		Utils.setFinalOutput(options, job);
 		
 		FileOutputFormat.setOutputPath(job, fout);
 
 		log.info("Running Job: " +jobname);
-		log.info("Dummy file " + dummy.getPath() + " as input");
+		log.info(options.getNumMaps() + " slots as input");
 		log.info("Nodes file " + fout + " as output");
-		JobClient.runJob(job);
+		RunReport.add(JobClient.runJob(job));
+		info.commitOutput(options, NODES_DIR_NAME);
 		log.info("Finished Running Job: " + jobname);
 	}
 
 	public static class DummyToPageRankLinksMapper extends MapReduceBase implements
-	Mapper<LongWritable, Text, LongWritable, Text> {
+	Mapper<LongWritable, SlotRangeSplit, LongWritable, Text> {
 
 		private static final Log log = LogFactory.getLog(DummyToPageRankLinksMapper.class.getName());
 		private HtmlCore html;
-		private long pages, slotpages;
+		private long slotpages;
+		private GenStats stats;
 		
 		private void getOptions(JobConf job) {
-			pages = job.getLong("pages", 0);
 			slotpages = job.getLong("slotpages", 0);
 			job.get("delimiter");
 		}
@@ -224,6 +226,7 @@ public class PagerankData {
 
 			try {
 				html = new HtmlCore(job);
+				stats = new GenStats(html);
 				
 				getOptions(job);
 			} catch (IOException e) {
@@ -232,32 +235,37 @@ public class PagerankData {
 			}
 		}
 	
-		public void map(LongWritable key, Text value, OutputCollector<LongWritable, Text> output,
+		public void map(LongWritable key, SlotRangeSplit value, OutputCollector<LongWritable, Text> output,
 				Reporter reporter) throws IOException {
 
-			int slotId = Integer.parseInt(value.toString().trim());
-			html.fireRandom(slotId);
+			html.fireRandom(value.getSlot());
 
-			long[] range = HtmlCore.getPageRange(slotId, pages, slotpages);
+			long[] range = value.getRange();
 
 			/**
 			 * For output collect
 			 */
 			for (long i=range[0]; i<range[1]; i++) {
+				long t = stats.start();
 				key.set(i);
 				
+				html.fireRecord(i);
 				long[] linkids = html.genPureLinkIds();
+				t = stats.lap(Counters.GENERATE_NANOS, t);
 				for (int j=0; j<linkids.length; j++) {
 					String to = Long.toString(linkids[j]);
 					Text v = new Text(to);
+					t = stats.lap(Counters.ENCODE_NANOS, t);
 					output.collect(key, v);
-					reporter.incrCounter(es.udc.rgen.misc.Counters.BYTES_DATA_GENERATED, 8+v.getLength());
+					t = stats.lap(Counters.WRITE_NANOS, t);
+					stats.record(8+v.getLength());
 				}
 				
 				if (0==(i % 10000)) {
 					log.info("still running: " + (i - range[0]) + " of " + slotpages);
 				}
 			}
+			stats.flush(reporter);
 		}
 	}
 
@@ -268,7 +276,7 @@ public class PagerankData {
 		JobConf job = new JobConf(PagerankData.class);
 		String jobname = "Create pagerank links";
 
-		Path fout = new Path(options.getResultPath(), EDGES_DIR_NAME);
+		Path fout = info.getOutputPath(options, EDGES_DIR_NAME);
 
 		job.setJobName(jobname);
 		setPageRankLinksOptions(job);
@@ -280,8 +288,7 @@ public class PagerankData {
 
 		job.setNumReduceTasks(0);
 		
-		FileInputFormat.setInputPaths(job, dummy.getPath());
-		job.setInputFormat(NLineInputFormat.class);
+		job.setInputFormat(SlotRangeInputFormat.class);
 
 		job.setMapperClass(DummyToPageRankLinksMapper.class);
 
@@ -291,19 +298,15 @@ public class PagerankData {
 			job.setOutputFormat(TextOutputFormat.class);
 		}
 		
-		if (null != options.getCodecClass()) {
-			job.set("mapred.output.compression.type","BLOCK");
-			job.set("mapreduce.output.fileoutputformat.compress.type", "BLOCK");
-			FileOutputFormat.setCompressOutput(job, true);
-			FileOutputFormat.setOutputCompressorClass(job, options.getCodecClass());
-		}
+		Utils.setFinalOutput(options, job);
 		
 		FileOutputFormat.setOutputPath(job, fout);
 		
 		log.info("Running Job: " +jobname);
-		log.info("Dummy file " + dummy.getPath() + " as input");
+		log.info(options.getNumMaps() + " slots as input");
 		log.info("Edges file " + fout + " as output");
-		JobClient.runJob(job);
+		RunReport.add(JobClient.runJob(job));
+		info.commitOutput(options, EDGES_DIR_NAME);
 		log.info("Finished Running Job: " + jobname);
 	}
 
@@ -319,6 +322,8 @@ public class PagerankData {
 	private void closeGenerator() throws IOException {
 
 		log.info("Closing pagerank data generator...");
+		info.addRun(options, options.getNumPages(), 0, options.getNumMaps());
+		info.write(options.getResultPath());
 		Utils.checkHdfsPath(options.getWorkPath(), true);
 	}
 }
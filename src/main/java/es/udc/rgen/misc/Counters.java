@@ -1,5 +1,17 @@
 package es.udc.rgen.misc;
 
+/***
+ * Counters shared by all generators, see GenStats.
+ */
 public enum Counters {
-	BYTES_DATA_GENERATED
+	BYTES_DATA_GENERATED,
+	RECORDS_DATA_GENERATED,
+	RANDOM_DRAWS,
+	ZIPF_SAMPLES,
+	CACHE_HITS,
+	CACHE_MISSES,
+	GENERATE_NANOS,
+	ENCODE_NANOS,
+	SERIALIZE_NANOS,
+	WRITE_NANOS
 }
@@ -0,0 +1,211 @@
+package es.udc.rgen.misc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+
+import es.udc.rgen.DataOptions;
+
+/***
+ * What the runs of a generator have written under its result path, so that
+ * a later run with -append can add to it: the pages and the other items
+ * (visits of hive) generated so far, the slots they took, the number of
+ * runs and the -seed they used, which an appending run must repeat. Runs
+ * whose data cannot be extended, as nutch data without a seed, are marked
+ * so. Each appending run writes its part files with a tag of its own,
+ * part-a<run>-..., beside those of the earlier runs.
+ *
+ * The file name starts with '_' so that jobs reading the generated data
+ * skip it.
+ */
+public class GenInfo {
+
+	private static final Log log = LogFactory.getLog(GenInfo.class.getName());
+
+	public static final String INFO_FILE_NAME = "_rgen_info";
+
+	private static final String PAGES = "pages";
+	private static final String ITEMS = "items";
+	private static final String SLOTS = "slots";
+	private static final String RUNS = "runs";
+	private static final String SEED = "seed";
+	private static final String APPENDABLE = "appendable";
+
+	private long pages, items;
+	private int slots, runs;
+	private Long seed;
+	private boolean appendable;
+
+	public GenInfo() {
+		pages = 0;
+		items = 0;
+		slots = 0;
+		runs = 0;
+		seed = null;
+		appendable = true;
+	}
+
+	public long getPages() {
+		return pages;
+	}
+
+	public long getItems() {
+		return items;
+	}
+
+	public int getSlots() {
+		return slots;
+	}
+
+	public int getRuns() {
+		return runs;
+	}
+
+	/***
+	 * Tag of the part files of the next run, none for the first one.
+	 */
+	public String getPartTag() {
+		return (0 == runs) ? null : "a" + runs;
+	}
+
+	public void setAppendable(boolean appendable) {
+		this.appendable = appendable;
+	}
+
+	/***
+	 * Account a run of options that took the pages and items up to the
+	 * given totals.
+	 */
+	public void addRun(DataOptions options, long pages, long items, int slots) {
+		this.pages = pages;
+		this.items = items;
+		this.slots += slots;
+		this.runs++;
+		this.seed = options.hasSeed() ? Long.valueOf(options.getSeed()) : null;
+	}
+
+	/***
+	 * Refuse to append with options to data that cannot take it, or that
+	 * was generated from another seed.
+	 */
+	public void checkAppend(DataOptions options) throws IOException {
+		if (!appendable) {
+			throw new IOException("Data of " + options.getResultPath() + " cannot be appended to");
+		}
+		Long other = options.hasSeed() ? Long.valueOf(options.getSeed()) : null;
+		if ((null == seed) ? (null != other) : !seed.equals(other)) {
+			throw new IOException("Data of " + options.getResultPath() + " was generated "
+					+ ((null == seed) ? "without -seed" : "with -seed " + seed)
+					+ ", the appended data must be too");
+		}
+	}
+
+	/***
+	 * Where a job writes the data of dir name: the result path itself on
+	 * the first run, the work path on later ones, from where commitOutput
+	 * moves the parts.
+	 */
+	public Path getOutputPath(DataOptions options, String name) {
+		if (null == getPartTag()) {
+			return new Path(options.getResultPath(), name);
+		}
+		return new Path(options.getWorkPath(), name);
+	}
+
+	public void commitOutput(DataOptions options, String name) throws IOException {
+		if (null != getPartTag()) {
+			moveParts(new Path(options.getWorkPath(), name),
+					new Path(options.getResultPath(), name), getPartTag());
+		}
+	}
+
+	public static GenInfo read(Path dir) throws IOException {
+
+		Path file = new Path(dir, INFO_FILE_NAME);
+		FileSystem fs = file.getFileSystem(new JobConf());
+		if (!fs.exists(file)) {
+			throw new IOException("No " + INFO_FILE_NAME + " in " + dir
+					+ ", nothing to append to");
+		}
+
+		Properties props = new Properties();
+		InputStream in = fs.open(file);
+		try {
+			props.load(in);
+		} finally {
+			in.close();
+		}
+
+		GenInfo info = new GenInfo();
+		try {
+			info.pages = Long.parseLong(props.getProperty(PAGES, "0"));
+			info.items = Long.parseLong(props.getProperty(ITEMS, "0"));
+			info.slots = Integer.parseInt(props.getProperty(SLOTS, "0"));
+			info.runs = Integer.parseInt(props.getProperty(RUNS, "0"));
+			String seed = props.getProperty(SEED);
+			info.seed = (null == seed) ? null : Long.valueOf(seed);
+			info.appendable = Boolean.parseBoolean(props.getProperty(APPENDABLE, "true"));
+		} catch (NumberFormatException e) {
+			throw new IOException("Malformed " + file, e);
+		}
+		log.info("Appending to " + info.pages + " pages and " + info.items
+				+ " items of " + info.runs + " runs in " + dir);
+		return info;
+	}
+
+	public void write(Path dir) throws IOException {
+
+		Properties props = new Properties();
+		props.setProperty(PAGES, Long.toString(pages));
+		props.setProperty(ITEMS, Long.toString(items));
+		props.setProperty(SLOTS, Integer.toString(slots));
+		props.setProperty(RUNS, Integer.toString(runs));
+		if (null != seed) {
+			props.setProperty(SEED, Long.toString(seed));
+		}
+		props.setProperty(APPENDABLE, Boolean.toString(appendable));
+
+		Path file = new Path(dir, INFO_FILE_NAME);
+		FileSystem fs = file.getFileSystem(new JobConf());
+		OutputStream out = fs.create(file, true);
+		try {
+			props.store(out, "rgen");
+		} finally {
+			out.close();
+		}
+	}
+
+	/***
+	 * Move the part files of a job output into dir, renamed with tag so
+	 * that they do not clash with the parts there, and drop the rest of
+	 * the job output.
+	 */
+	public static void moveParts(Path from, Path dir, String tag) throws IOException {
+
+		FileSystem fs = from.getFileSystem(new JobConf());
+		if (!fs.exists(dir)) {
+			fs.mkdirs(dir);
+		}
+		int moved = 0;
+		for (FileStatus status : fs.listStatus(from)) {
+			String name = status.getPath().getName();
+			if (name.startsWith("part-")) {
+				Path to = new Path(dir, "part-" + tag + name.substring("part".length()));
+				if (!fs.rename(status.getPath(), to)) {
+					throw new IOException("Unable to move " + status.getPath() + " to " + to);
+				}
+				moved++;
+			}
+		}
+		fs.delete(from, true);
+		log.info(moved + " parts of " + from + " appended to " + dir);
+	}
+}
@@ -0,0 +1,125 @@
+package es.udc.rgen.misc;
+
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+/***
+ * Per task accumulator of the generator Counters. Updating a local array is
+ * much cheaper than going through the Reporter for every record, so tasks
+ * add to a GenStats and flush it at the end of each map call (and on close).
+ *
+ * Phases of a record are timed with lap, which chains:
+ * 		long t = stats.start();
+ * 		... generate ...
+ * 		t = stats.lap(Counters.GENERATE_NANOS, t);
+ * 		... write ...
+ * 		t = stats.lap(Counters.WRITE_NANOS, t);
+ *
+ * Records are too cheap to read the clock around each one, so start only
+ * times one record out of TIMING_PERIOD and its laps count for all of
+ * them; the laps of the rest return at once. Coarser units, as blocks of
+ * records, may be timed in full starting from now instead.
+ */
+public class GenStats {
+
+	public static final int TIMING_PERIOD = 64;
+	private static final long UNTIMED = Long.MIN_VALUE;
+
+	private long[] values = new long[Counters.values().length];
+	private long starts = 0;
+	private long weight = 1;
+
+	private HtmlCore core;
+	private long draws, samples;
+
+	public GenStats() {
+	}
+
+	/***
+	 * Also report the random draws and zipf samples of an HtmlCore.
+	 */
+	public GenStats(HtmlCore core) {
+		this.core = core;
+	}
+
+	public static long now() {
+		return System.nanoTime();
+	}
+
+	/***
+	 * Start a record, timed once every TIMING_PERIOD records.
+	 * @return start of its first phase, for lap
+	 */
+	public long start() {
+		if (0 != (starts++ % TIMING_PERIOD)) {
+			return UNTIMED;
+		}
+		weight = TIMING_PERIOD;
+		return System.nanoTime();
+	}
+
+	public void add(Counters counter, long amount) {
+		values[counter.ordinal()] += amount;
+	}
+
+	/***
+	 * @return amount added to counter since the last flush
+	 */
+	public long get(Counters counter) {
+		return values[counter.ordinal()];
+	}
+
+	public void record(long bytes) {
+		values[Counters.RECORDS_DATA_GENERATED.ordinal()]++;
+		values[Counters.BYTES_DATA_GENERATED.ordinal()] += bytes;
+	}
+
+	/***
+	 * Add the time elapsed since start to phase.
+	 * @return current time, start of the next phase
+	 */
+	public long lap(Counters phase, long start) {
+		if (UNTIMED == start) {
+			return UNTIMED;
+		}
+		long now = System.nanoTime();
+		values[phase.ordinal()] += (now - start) * weight;
+		return now;
+	}
+
+	private void collect() {
+		if (null != core) {
+			long d = core.getRandomDraws();
+			long s = core.getZipfSamples();
+			add(Counters.RANDOM_DRAWS, d - draws);
+			add(Counters.ZIPF_SAMPLES, s - samples);
+			draws = d;
+			samples = s;
+		}
+	}
+
+	public void flush(Reporter reporter) {
+		if (null == reporter) {
+			return;
+		}
+		collect();
+		Counters[] counters = Counters.values();
+		for (int i=0; i<values.length; i++) {
+			if (0 != values[i]) {
+				reporter.incrCounter(counters[i], values[i]);
+				values[i] = 0;
+			}
+		}
+	}
+
+	public void flush(TaskAttemptContext context) {
+		collect();
+		Counters[] counters = Counters.values();
+		for (int i=0; i<values.length; i++) {
+			if (0 != values[i]) {
+				context.getCounter(counters[i]).increment(values[i]);
+				values[i] = 0;
+			}
+		}
+	}
+}
@@ -9,6 +9,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapred.JobConf;
 
+import es.udc.rgen.DataOptions;
 import es.udc.rgen.RGen;
 
 /***
@@ -58,6 +59,14 @@ public class HtmlCore {
 	private int llen;
 	private long[] wordids, linkids;
 
+	private long draws;		// uniform/gaussian draws, zipf samples are counted by ZipfCore
+
+	// with a global seed, streams are reseeded for each record
+	private boolean seeded;
+	private long seed;
+	private SplitMix64 recordSeeds;
+	private static final long NAME_DOMAIN = 0x6e616d65L;
+
 	private void printDict() {
 		if (null != dict) {
 			log.info("[dict] slots: " + slots + " length: " + dict.length);
@@ -73,6 +82,9 @@ public class HtmlCore {
 		pages = job.getLong("pages", 0);
 		slotpages = job.getLong("slotpages", 0);
 		slots = (int) Math.ceil((pages * 1.0 / slotpages));
+		seeded = DataOptions.isSeeded(job);
+		seed = job.getLong(DataOptions.SEED, 0);
+		recordSeeds = new SplitMix64(seed);
 		outpages = (long) Math.floor(pages * epercent);
 		totalpages = pages + outpages;
 
@@ -112,15 +124,12 @@ public class HtmlCore {
 		return meanContentLen * (1 - linkratio);
 	}
 
+	public long getRandomDraws() {
+		return draws;
+	}
 
-	public static long[] getPageRange(int slotId, long limit, long slotlimit) {
-		long[] range = new long[2];
-		range[0] = slotlimit * (slotId - 1);
-		range[1] = range[0] + slotlimit;
-		if (range[1] > limit) {
-			range[1] = limit;
-		}
-		return range;
+	public long getZipfSamples() {
+		return ((null == lzipf) ? 0 : lzipf.samples) + ((null == wzipf) ? 0 : wzipf.samples);
 	}
 
 	public void fireRandom(int rseed) {
@@ -136,15 +145,53 @@ public class HtmlCore {
 		}
 		randPageGo = new Random(randRandSeed.nextLong());
 	}
+
+	/***
+	 * With a global seed, reseed every stream from it and the id of the page
+	 * about to be generated, so that the page is the same whichever slot or
+	 * task generates it. Without one, the streams of fireRandom go on.
+	 */
+	public void fireRecord(long id) {
+		if (seeded) {
+			reseed(SplitMix64.mix(seed, id));
+		}
+	}
+
+	/***
+	 * As fireRecord(long), for records known by name rather than by id.
+	 */
+	public void fireRecord(Text name) {
+		if (seeded) {
+			reseed(SplitMix64.mix(seed ^ NAME_DOMAIN, name.hashCode()));
+		}
+	}
+
+	private void reseed(long rseed) {
+		if (null == randUrl) {
+			fireRandom(0);
+		}
+		recordSeeds.setSeed(rseed);
+		randUrl.setSeed(recordSeeds.nextLong());
+		randElinks.setSeed(recordSeeds.nextLong());
+		if (null != lzipf) {
+			lzipf.setRandSeed(recordSeeds.nextLong());
+		}
+		if (null != wzipf) {
+			wzipf.setRandSeed(recordSeeds.nextLong());
+		}
+		randPageGo.setSeed(recordSeeds.nextLong());
+	}
 	
 	public int nextUrlLength()
 	{
+		draws++;
 		return (int) Math.round(
 				randPageGo.nextInt(maxUrlLength-minUrlLength+1)+minUrlLength);
 	}
 
 	public int nextUrlBytes(byte[] url) {
 		int ulen = nextUrlLength();
+		draws = draws + ulen;
 		for (int i=0; i<ulen; i++) {
 			url[i] = (byte) (randUrl.nextInt(26) + 'a');
 		}
@@ -153,6 +200,7 @@ public class HtmlCore {
 
 	public void nextUrlJoinBytesInt(JoinBytesInt item) {
 		item.ulen = (byte) nextUrlLength();
+		draws = draws + item.ulen;
 		for (int i=0; i<item.ulen; i++) {
 			item.url[i] = (byte) (randUrl.nextInt(26) + 'a');
 		}
@@ -160,6 +208,7 @@ public class HtmlCore {
 	
 	public byte[] nextUrlBytes() {
 		int ulen = nextUrlLength();
+		draws = draws + ulen;
 		byte[] url = new byte[ulen];
 		for (int i=0; i<ulen; i++) {
 			url[i] = (byte) (randUrl.nextInt(26) + 'a');
@@ -172,6 +221,7 @@ public class HtmlCore {
 		
 		int ulen = nextUrlLength();
 		byte[] url = new byte[ulen + 7];
+		draws = draws + ulen;
 		for (int i=0; i<ulen; i++) {
 			url[i] = (byte) (randUrl.nextInt(26) + 'a');
 		}
@@ -183,6 +233,7 @@ public class HtmlCore {
 		double gauss = 0;
 		do {
 			gauss = randPageGo.nextGaussian();
+			draws++;
 		} while ((gauss < gaussLowerLimit) || (gauss > gaussUpperLimit));
 		
 		return (int) Math.round(meanContentLen
@@ -190,6 +241,7 @@ public class HtmlCore {
 	}
 	
 	private long nextElink() {
+		draws++;
 		return pages + (long) Math.floor(randElinks.nextDouble() * outpages);
 	}
 
@@ -233,6 +285,7 @@ public class HtmlCore {
 	public References genPageLinks() {
 
 		int pageLength = this.nextContentLength();
+		draws = draws + pageLength;
 		if (linkids.length < (2 * pageLength)) {
 			linkids = new long[2 * pageLength];
 		}
@@ -257,6 +310,7 @@ public class HtmlCore {
 		double gauss = 0;
 		do {
 			gauss = randPageGo.nextGaussian();
+			draws++;
 		} while ((gauss <= gaussLowerLimit) || (gauss >= gaussUpperLimit));
 		
 		return (int) Math.round(meanContentLen
@@ -278,6 +332,7 @@ public class HtmlCore {
 	public String genPageWords() {
 
 		int pageLength = this.nextContentLength();
+		draws = draws + pageLength;
 		StringBuffer words = new StringBuffer("");
 		for (int i=0; i<pageLength; i++) {
 			double fact = randPageGo.nextDouble();
@@ -297,6 +352,7 @@ public class HtmlCore {
 		int pageLength = this.nextContentLength();
 		StringBuffer words = new StringBuffer(pageLength * 30);
 		StringBuffer title = new StringBuffer(200);
+		draws = draws + pageLength;
 		for (int i=0; i<pageLength; i++) {
 			double fact = randPageGo.nextDouble();
 			if (fact >= linkratio) {
@@ -0,0 +1,50 @@
+package es.udc.rgen.misc;
+
+import java.io.IOException;
+
+import org.apache.hadoop.mapred.InputFormat;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.JobConfigurable;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.TextInputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/***
+ * Wraps the input format set with setInputFormat, assigning its file splits
+ * to hosts with LocalityScheduler. Records are read by the wrapped format.
+ *
+ * It can be given to MultipleInputs for the path of existing data, with
+ * the wrapped format in the job configuration.
+ */
+public class LocalityInputFormat<K, V> implements InputFormat<K, V>, JobConfigurable {
+
+	public static final String INPUT_FORMAT_CLASS = "rgen.locality.input.format.class";
+
+	private InputFormat<K, V> format;
+
+	public static void setInputFormat(JobConf job,
+			@SuppressWarnings("rawtypes") Class<? extends InputFormat> format) {
+		job.setClass(INPUT_FORMAT_CLASS, format, InputFormat.class);
+	}
+
+	@SuppressWarnings("unchecked")
+	public void configure(JobConf job) {
+		format = ReflectionUtils.newInstance(job.getClass(INPUT_FORMAT_CLASS,
+				TextInputFormat.class, InputFormat.class), job);
+	}
+
+	public InputSplit[] getSplits(JobConf job, int numSplits) throws IOException {
+		InputSplit[] splits = format.getSplits(job, numSplits);
+		if (!LocalityScheduler.isEnabled(job)) {
+			return splits;
+		}
+		return LocalityScheduler.schedule(splits, job);
+	}
+
+	public RecordReader<K, V> getRecordReader(InputSplit split, JobConf job,
+			Reporter reporter) throws IOException {
+		return format.getRecordReader(split, job, reporter);
+	}
+}
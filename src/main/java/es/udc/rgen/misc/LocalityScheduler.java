@@ -0,0 +1,318 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.udc.rgen.misc;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.server.tasktracker.TTConfig;
+
+/***
+ * Replica aware assignment of input splits to hosts, as TeraSort's
+ * TeraScheduler did for its input, usable by any job reading existing data.
+ *
+ * Hosts are visited from the one holding fewer unassigned splits, and each
+ * takes up to slotsPerHost of its splits, preferring those with fewer other
+ * replicas. Every assigned split is rewritten with its host as the only
+ * location, which balances node local maps across the cluster; splits that
+ * could not be placed keep their locations and go last.
+ *
+ * Jobs on the mapreduce API call schedule(List, Configuration) from their
+ * input format's getSplits; mapred jobs can wrap their input format in
+ * LocalityInputFormat.
+ */
+public class LocalityScheduler {
+
+	private static final Log log = LogFactory.getLog(LocalityScheduler.class.getName());
+
+	public static final String ENABLED = "rgen.locality.scheduler";
+	public static final boolean DEFAULT_ENABLED = true;
+
+	private Split[] splits;
+	private List<Host> hosts = new ArrayList<Host>();
+	private int slotsPerHost;
+	private int remainingSplits = 0;
+
+	static class Split {
+		String name;
+		boolean isAssigned = false;
+		List<Host> locations = new ArrayList<Host>();
+		Split(String name) {
+			this.name = name;
+		}
+		public String toString() {
+			StringBuffer result = new StringBuffer();
+			result.append(name);
+			result.append(" on ");
+			for (Host host : locations) {
+				result.append(host.hostname);
+				result.append(", ");
+			}
+			return result.toString();
+		}
+	}
+
+	static class Host {
+		String hostname;
+		List<Split> splits = new ArrayList<Split>();
+		Host(String hostname) {
+			this.hostname = hostname;
+		}
+		public String toString() {
+			return splits.size() + " " + hostname;
+		}
+	}
+
+	/***
+	 * @param names description of each split, for logging
+	 * @param locations the hosts holding each split
+	 * @param slotsPerHost most splits assigned to a host in each round
+	 */
+	public LocalityScheduler(String[] names, String[][] locations, int slotsPerHost) {
+		this.slotsPerHost = slotsPerHost;
+		Map<String, Host> hostTable = new HashMap<String, Host>();
+		splits = new Split[names.length];
+		for (int i=0; i<names.length; i++) {
+			Split split = new Split(names[i]);
+			splits[remainingSplits++] = split;
+			for (String hostname : locations[i]) {
+				Host host = hostTable.get(hostname);
+				if (null == host) {
+					host = new Host(hostname);
+					hostTable.put(hostname, host);
+					hosts.add(host);
+				}
+				host.splits.add(split);
+				split.locations.add(host);
+			}
+		}
+	}
+
+	private Host pickBestHost() {
+		Host result = null;
+		int splits = Integer.MAX_VALUE;
+		for (Host host : hosts) {
+			if (host.splits.size() < splits) {
+				result = host;
+				splits = host.splits.size();
+			}
+		}
+		if (null != result) {
+			hosts.remove(result);
+			log.debug("picking " + result);
+		}
+		return result;
+	}
+
+	private void pickBestSplits(Host host) {
+		int tasksToPick = Math.min(slotsPerHost,
+				(int) Math.ceil((double) remainingSplits / hosts.size()));
+		Split[] best = new Split[tasksToPick];
+		for (Split cur : host.splits) {
+			int i = 0;
+			while (i < tasksToPick && null != best[i]
+					&& best[i].locations.size() <= cur.locations.size()) {
+				i++;
+			}
+			if (i < tasksToPick) {
+				for (int j=tasksToPick-1; j>i; j--) {
+					best[j] = best[j-1];
+				}
+				best[i] = cur;
+			}
+		}
+		// for the chosen splits, remove them from the other locations
+		for (int i=0; i<tasksToPick; i++) {
+			if (null != best[i]) {
+				log.debug(" best: " + best[i].name);
+				for (Host other : best[i].locations) {
+					other.splits.remove(best[i]);
+				}
+				best[i].locations.clear();
+				best[i].locations.add(host);
+				best[i].isAssigned = true;
+				remainingSplits--;
+			}
+		}
+		// for the non-chosen splits, remove this host
+		for (Split cur : host.splits) {
+			if (!cur.isAssigned) {
+				cur.locations.remove(host);
+			}
+		}
+	}
+
+	/***
+	 * Solve the schedule.
+	 * @return the host assigned to each split, null for those left unplaced
+	 */
+	public String[] solve() {
+		Host host = pickBestHost();
+		while (null != host) {
+			pickBestSplits(host);
+			host = pickBestHost();
+		}
+		String[] result = new String[splits.length];
+		for (int i=0; i<splits.length; i++) {
+			if (splits[i].isAssigned) {
+				result[i] = splits[i].locations.get(0).hostname;
+			}
+		}
+		return result;
+	}
+
+	public static boolean isEnabled(Configuration conf) {
+		return conf.getBoolean(ENABLED, DEFAULT_ENABLED);
+	}
+
+	private static int getSlotsPerHost(Configuration conf) {
+		return conf.getInt(TTConfig.TT_MAP_SLOTS, 4);
+	}
+
+	/***
+	 * Schedule the file splits of a mapreduce job, leaving the list as it is
+	 * if it holds other kinds of split.
+	 */
+	public static List<InputSplit> schedule(List<InputSplit> splits, Configuration conf)
+			throws IOException {
+
+		int n = splits.size();
+		String[] names = new String[n];
+		String[][] locations = new String[n][];
+		for (int i=0; i<n; i++) {
+			if (!(splits.get(i) instanceof FileSplit)) {
+				return splits;
+			}
+			FileSplit split = (FileSplit) splits.get(i);
+			names[i] = split.getPath().toString();
+			locations[i] = split.getLocations();
+		}
+
+		String[] hosts = new LocalityScheduler(names, locations, getSlotsPerHost(conf)).solve();
+		InputSplit[] result = new InputSplit[n];
+		int left = 0;
+		int right = n - 1;
+		for (int i=0; i<n; i++) {
+			FileSplit split = (FileSplit) splits.get(i);
+			if (null != hosts[i]) {
+				result[left++] = new FileSplit(split.getPath(), split.getStart(),
+						split.getLength(), new String[] {hosts[i]});
+			} else {
+				result[right--] = split;
+			}
+		}
+		log.info("Scheduled " + left + " of " + n + " splits node local");
+		List<InputSplit> ret = new ArrayList<InputSplit>(n);
+		for (InputSplit split : result) {
+			ret.add(split);
+		}
+		return ret;
+	}
+
+	/***
+	 * Schedule the file splits of a mapred job, leaving the array as it is if
+	 * it holds other kinds of split.
+	 */
+	public static org.apache.hadoop.mapred.InputSplit[] schedule(
+			org.apache.hadoop.mapred.InputSplit[] splits, Configuration conf) throws IOException {
+
+		int n = splits.length;
+		String[] names = new String[n];
+		String[][] locations = new String[n][];
+		for (int i=0; i<n; i++) {
+			if (!(splits[i] instanceof org.apache.hadoop.mapred.FileSplit)) {
+				return splits;
+			}
+			org.apache.hadoop.mapred.FileSplit split = (org.apache.hadoop.mapred.FileSplit) splits[i];
+			names[i] = split.getPath().toString();
+			locations[i] = split.getLocations();
+		}
+
+		String[] hosts = new LocalityScheduler(names, locations, getSlotsPerHost(conf)).solve();
+		org.apache.hadoop.mapred.InputSplit[] result = new org.apache.hadoop.mapred.InputSplit[n];
+		int left = 0;
+		int right = n - 1;
+		for (int i=0; i<n; i++) {
+			org.apache.hadoop.mapred.FileSplit split = (org.apache.hadoop.mapred.FileSplit) splits[i];
+			if (null != hosts[i]) {
+				result[left++] = new org.apache.hadoop.mapred.FileSplit(split.getPath(),
+						split.getStart(), split.getLength(), new String[] {hosts[i]});
+			} else {
+				result[right--] = split;
+			}
+		}
+		log.info("Scheduled " + left + " of " + n + " splits node local");
+		return result;
+	}
+
+	/***
+	 * Solve the schedule of a file with a split per line: its name followed
+	 * by the hosts holding it, separated by spaces.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length != 1) {
+			System.err.println("Usage: LocalityScheduler <split_locations_file>");
+			System.exit(1);
+		}
+		List<String> names = new ArrayList<String>();
+		List<String[]> locations = new ArrayList<String[]>();
+		BufferedReader in = new BufferedReader(
+				new InputStreamReader(new FileInputStream(args[0]), "UTF-8"));
+		try {
+			String line = in.readLine();
+			while (null != line) {
+				StringTokenizer itr = new StringTokenizer(line);
+				names.add(itr.nextToken());
+				List<String> hosts = new ArrayList<String>();
+				while (itr.hasMoreTokens()) {
+					hosts.add(itr.nextToken());
+				}
+				locations.add(hosts.toArray(new String[hosts.size()]));
+				line = in.readLine();
+			}
+		} finally {
+			in.close();
+		}
+
+		String[] hosts = new LocalityScheduler(names.toArray(new String[names.size()]),
+				locations.toArray(new String[locations.size()][]), 4).solve();
+		int leftOvers = 0;
+		for (int i=0; i<hosts.length; i++) {
+			if (null != hosts[i]) {
+				System.out.println("sched: " + names.get(i) + " on " + hosts[i]);
+			} else {
+				System.out.println("left: " + names.get(i));
+				leftOvers++;
+			}
+		}
+		System.out.println("left over: " + leftOvers);
+	}
+}
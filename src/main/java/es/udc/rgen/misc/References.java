@@ -8,6 +8,9 @@ import org.apache.hadoop.io.Writable;
 
 public class References implements Writable {
 
+	/* len of the mark of a page only linked to, with no refs */
+	public static final int LINKED = Integer.MIN_VALUE;
+
 	public int len;
 	public long[] refs;
 	
@@ -22,7 +25,7 @@ public class References implements Writable {
 	public void readFields(DataInput in) throws IOException {
 
 		len = in.readInt();
-		int abslen = Math.abs(len);
+		int abslen = (LINKED == len) ? 0 : Math.abs(len);
 		refs = new long[abslen];
 		for (int i=0; i<abslen; i++) {
 			refs[i] = in.readLong();
@@ -33,7 +36,7 @@ public class References implements Writable {
 	public void write(DataOutput out) throws IOException {
 
 		out.writeInt(len);
-		int abslen = Math.abs(len);
+		int abslen = (LINKED == len) ? 0 : Math.abs(len);
 		for (int i=0; i<abslen; i++) {
 			out.writeLong(refs[i]);
 		}
@@ -0,0 +1,139 @@
+package es.udc.rgen.misc;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.JobStatus;
+import org.apache.hadoop.mapred.RunningJob;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.counters.AbstractCounters;
+import org.apache.hadoop.mapreduce.counters.CounterGroupBase;
+
+import es.udc.rgen.DataOptions;
+
+/***
+ * Collects the counters of every job run by a generator and writes them as a
+ * JSON document into the result path when the generation finishes:
+ *
+ * {"type": ..., "start": ..., "end": ..., "jobs": [
+ * 		{"name": ..., "id": ..., "start": ..., "end": ...,
+ * 		 "counters": {group: {counter: value, ...}, ...}}, ...]}
+ *
+ * The file name starts with '_' so that jobs reading the generated data
+ * skip it.
+ */
+public class RunReport {
+
+	private static final Log log = LogFactory.getLog(RunReport.class.getName());
+
+	public static final String REPORT_FILE_NAME = "_rgen_report.json";
+
+	private static final long start = System.currentTimeMillis();
+	private static List<String> jobs = new ArrayList<String>();
+
+	public static void add(RunningJob job) {
+		try {
+			JobStatus status = job.getJobStatus();
+			add(job.getJobName(), job.getID().toString(),
+					status.getStartTime(), status.getFinishTime(), job.getCounters());
+		} catch (IOException e) {
+			log.warn("Unable to get counters of job " + job.getID(), e);
+		}
+	}
+
+	public static void add(Job job) {
+		try {
+			add(job.getJobName(), job.getJobID().toString(),
+					job.getStartTime(), job.getFinishTime(), job.getCounters());
+		} catch (IOException e) {
+			log.warn("Unable to get counters of job " + job.getJobID(), e);
+		} catch (InterruptedException e) {
+			log.warn("Unable to get counters of job " + job.getJobID(), e);
+		}
+	}
+
+	private static synchronized void add(String name, String id, long begin, long end,
+			AbstractCounters<?, ?> counters) {
+
+		StringBuilder json = new StringBuilder();
+		json.append("{\"name\": ").append(quote(name))
+			.append(", \"id\": ").append(quote(id))
+			.append(", \"start\": ").append(begin)
+			.append(", \"end\": ").append(end)
+			.append(", \"counters\": {");
+		if (null != counters) {
+			String gsep = "";
+			for (CounterGroupBase<?> group : counters) {
+				json.append(gsep).append(quote(group.getName())).append(": {");
+				String csep = "";
+				for (Counter counter : group) {
+					json.append(csep).append(quote(counter.getName()))
+						.append(": ").append(counter.getValue());
+					csep = ", ";
+				}
+				json.append("}");
+				gsep = ", ";
+			}
+		}
+		json.append("}}");
+		jobs.add(json.toString());
+	}
+
+	public static synchronized void write(DataOptions options) throws IOException {
+
+		Path report = new Path(options.getResultPath(), REPORT_FILE_NAME);
+		FileSystem fs = report.getFileSystem(new JobConf());
+
+		FSDataOutputStream out = fs.create(report, true);
+		Writer writer = new OutputStreamWriter(out, "UTF-8");
+		try {
+			writer.write("{\"type\": " + quote(options.getType().toString())
+					+ ", \"start\": " + start
+					+ ", \"end\": " + System.currentTimeMillis()
+					+ ", \"jobs\": [");
+			for (int i=0; i<jobs.size(); i++) {
+				writer.write((0 == i) ? "\n" : ",\n");
+				writer.write(jobs.get(i));
+			}
+			writer.write("\n]}\n");
+		} finally {
+			writer.close();
+		}
+		log.info("Run report written to " + report);
+	}
+
+	private static String quote(String value) {
+		if (null == value) {
+			return "null";
+		}
+		StringBuilder quoted = new StringBuilder(value.length() + 2);
+		quoted.append('"');
+		for (int i=0; i<value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"': quoted.append("\\\""); break;
+			case '\\': quoted.append("\\\\"); break;
+			case '\n': quoted.append("\\n"); break;
+			case '\r': quoted.append("\\r"); break;
+			case '\t': quoted.append("\\t"); break;
+			default:
+				if (c < 0x20) {
+					quoted.append(String.format("\\u%04x", (int) c));
+				} else {
+					quoted.append(c);
+				}
+			}
+		}
+		return quoted.append('"').toString();
+	}
+}
@@ -0,0 +1,189 @@
+package es.udc.rgen.misc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import es.udc.rgen.DataOptions;
+
+/***
+ * Virtual input of the generators: a split per slot, made up from the job
+ * configuration, instead of a dummy file in HDFS with a slot id per line
+ * read with NLineInputFormat. Each split gives its map a single record,
+ * its slot id and the SlotRangeSplit itself.
+ *
+ * setSlots sets the number of slots and of ids to divide between them, in
+ * ranges of ceil(ids / slots), the last one cut at ids. The seed
+ * of each slot is mixed from SEED, or else the global seed, and its id
+ * with SplitMix64, and HOSTS, when set, gives the slots locality hints in
+ * turns.
+ *
+ * setOffset lets a run continue an earlier one: its ranges divide the ids
+ * from FIRST_ID on, and its slots are numbered after the FIRST_SLOT slots
+ * of the earlier runs, so their random streams are new ones too.
+ *
+ * It serves both mapreduce APIs; mapred jobs using MultipleInputs can give
+ * it any path, which it does not read.
+ */
+public class SlotRangeInputFormat extends InputFormat<LongWritable, SlotRangeSplit>
+		implements org.apache.hadoop.mapred.InputFormat<LongWritable, SlotRangeSplit> {
+
+	private static final Log log = LogFactory.getLog(SlotRangeInputFormat.class.getName());
+
+	public static final String SLOTS = "rgen.slotrange.slots";
+	public static final String IDS = "rgen.slotrange.ids";
+	public static final String SEED = "rgen.slotrange.seed";
+	public static final String HOSTS = "rgen.slotrange.hosts";
+	public static final String FIRST_ID = "rgen.slotrange.first.id";
+	public static final String FIRST_SLOT = "rgen.slotrange.first.slot";
+
+	public static void setSlots(Configuration conf, int slots, long ids) {
+		conf.setInt(SLOTS, slots);
+		conf.setLong(IDS, ids);
+	}
+
+	public static void setOffset(Configuration conf, long firstId, int firstSlot) {
+		conf.setLong(FIRST_ID, firstId);
+		conf.setInt(FIRST_SLOT, firstSlot);
+	}
+
+	public static void setHosts(Configuration conf, String... hosts) {
+		conf.setStrings(HOSTS, hosts);
+	}
+
+	/***
+	 * The splits of every slot, in slot order.
+	 */
+	public static SlotRangeSplit[] getSlotSplits(Configuration conf) throws IOException {
+		int slots = conf.getInt(SLOTS, 0);
+		if (slots <= 0) {
+			throw new IOException("Number of slots not set with SlotRangeInputFormat.setSlots");
+		}
+		long ids = conf.getLong(IDS, slots);
+		long firstId = conf.getLong(FIRST_ID, 0);
+		int firstSlot = conf.getInt(FIRST_SLOT, 0);
+		long seed = conf.getLong(SEED, conf.getLong(DataOptions.SEED, 0));
+		String[] hosts = conf.getStrings(HOSTS, new String[0]);
+
+		long slotIds = (long) Math.ceil((ids - firstId) * 1.0 / slots);
+		SlotRangeSplit[] splits = new SlotRangeSplit[slots];
+		for (int i=0; i<slots; i++) {
+			long first = Math.min(firstId + slotIds * i, ids);
+			long end = Math.min(first + slotIds, ids);
+			int slot = firstSlot + i + 1;
+			String[] locations = (0 == hosts.length) ? hosts : new String[] {hosts[i % hosts.length]};
+			splits[i] = new SlotRangeSplit(slot, first, end, SplitMix64.mix(seed, slot), locations);
+		}
+		log.info("Generating ids " + firstId + " to " + ids + " in " + slots + " slots");
+		return splits;
+	}
+
+	public List<InputSplit> getSplits(JobContext job) throws IOException {
+		List<InputSplit> result = new ArrayList<InputSplit>();
+		for (SlotRangeSplit split : getSlotSplits(job.getConfiguration())) {
+			result.add(split);
+		}
+		return result;
+	}
+
+	public org.apache.hadoop.mapred.InputSplit[] getSplits(JobConf job, int numSplits)
+			throws IOException {
+		return getSlotSplits(job);
+	}
+
+	public RecordReader<LongWritable, SlotRangeSplit> createRecordReader(InputSplit split,
+			TaskAttemptContext context) throws IOException, InterruptedException {
+		return new SlotRecordReader();
+	}
+
+	public org.apache.hadoop.mapred.RecordReader<LongWritable, SlotRangeSplit> getRecordReader(
+			org.apache.hadoop.mapred.InputSplit split, JobConf job, Reporter reporter)
+			throws IOException {
+		return new OldSlotRecordReader((SlotRangeSplit) split);
+	}
+
+	/***
+	 * Return a single record, the slot id and its split.
+	 */
+	static class SlotRecordReader extends RecordReader<LongWritable, SlotRangeSplit> {
+		private SlotRangeSplit split;
+		private LongWritable key = null;
+
+		public void initialize(InputSplit split, TaskAttemptContext context)
+				throws IOException, InterruptedException {
+			this.split = (SlotRangeSplit) split;
+		}
+
+		public boolean nextKeyValue() {
+			if (null == key) {
+				key = new LongWritable(split.getSlot());
+				return true;
+			}
+			return false;
+		}
+
+		public LongWritable getCurrentKey() {
+			return key;
+		}
+
+		public SlotRangeSplit getCurrentValue() {
+			return split;
+		}
+
+		public float getProgress() {
+			return (null == key) ? 0.0f : 1.0f;
+		}
+
+		public void close() {}
+	}
+
+	static class OldSlotRecordReader
+			implements org.apache.hadoop.mapred.RecordReader<LongWritable, SlotRangeSplit> {
+		private SlotRangeSplit split;
+		private boolean done = false;
+
+		OldSlotRecordReader(SlotRangeSplit split) {
+			this.split = split;
+		}
+
+		public boolean next(LongWritable key, SlotRangeSplit value) {
+			if (done) {
+				return false;
+			}
+			key.set(split.getSlot());
+			value.set(split);
+			done = true;
+			return true;
+		}
+
+		public LongWritable createKey() {
+			return new LongWritable();
+		}
+
+		public SlotRangeSplit createValue() {
+			return new SlotRangeSplit();
+		}
+
+		public long getPos() {
+			return done ? 1 : 0;
+		}
+
+		public float getProgress() {
+			return done ? 1.0f : 0.0f;
+		}
+
+		public void close() {}
+	}
+}
@@ -0,0 +1,99 @@
+package es.udc.rgen.misc;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.InputSplit;
+
+/***
+ * The work of a generator slot: its id, counted from 1, the range of item
+ * ids it generates, first to end - 1, and the seed of its random stream.
+ * It is both the split of SlotRangeInputFormat, in either mapreduce API,
+ * and the value its single record hands to the mapper.
+ */
+public class SlotRangeSplit extends InputSplit implements org.apache.hadoop.mapred.InputSplit {
+
+	private int slot;
+	private long first;
+	private long end;
+	private long seed;
+	private String[] hosts = new String[0];
+
+	public SlotRangeSplit() { }
+
+	public SlotRangeSplit(int slot, long first, long end, long seed, String[] hosts) {
+		this.slot = slot;
+		this.first = first;
+		this.end = end;
+		this.seed = seed;
+		this.hosts = hosts;
+	}
+
+	public int getSlot() {
+		return slot;
+	}
+
+	public long getFirst() {
+		return first;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/***
+	 * The ids of the slot, first included and end excluded.
+	 */
+	public long[] getRange() {
+		return new long[] {first, end};
+	}
+
+	void set(SlotRangeSplit other) {
+		slot = other.slot;
+		first = other.first;
+		end = other.end;
+		seed = other.seed;
+		hosts = other.hosts;
+	}
+
+	public long getLength() throws IOException {
+		return end - first;
+	}
+
+	public String[] getLocations() throws IOException {
+		return hosts;
+	}
+
+	public void readFields(DataInput in) throws IOException {
+		slot = WritableUtils.readVInt(in);
+		first = WritableUtils.readVLong(in);
+		end = WritableUtils.readVLong(in);
+		seed = in.readLong();
+		hosts = new String[WritableUtils.readVInt(in)];
+		for (int i=0; i<hosts.length; i++) {
+			hosts[i] = Text.readString(in);
+		}
+	}
+
+	public void write(DataOutput out) throws IOException {
+		WritableUtils.writeVInt(out, slot);
+		WritableUtils.writeVLong(out, first);
+		WritableUtils.writeVLong(out, end);
+		out.writeLong(seed);
+		WritableUtils.writeVInt(out, hosts.length);
+		for (String host : hosts) {
+			Text.writeString(out, host);
+		}
+	}
+
+	public String toString() {
+		return "slot " + slot + " [" + first + ", " + end + ")";
+	}
+}
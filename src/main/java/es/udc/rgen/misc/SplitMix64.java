@@ -0,0 +1,89 @@
+package es.udc.rgen.misc;
+
+import org.apache.commons.math3.random.BitsStreamGenerator;
+
+/***
+ * SplitMix64 random generator: a 64 bit counter stepped by the golden
+ * ratio and scrambled by a finalizer. It is tiny, fast and, unlike
+ * java.util.Random, not synchronized, so each task or thread should own
+ * its generator. It plugs into the commons-math3 distributions as any
+ * other RandomGenerator.
+ *
+ * Independent streams for the tasks of a run come from forStream, which
+ * mixes the run seed with the stream number.
+ */
+public class SplitMix64 extends BitsStreamGenerator {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private long state;
+
+	public SplitMix64(long seed) {
+		setSeed(seed);
+	}
+
+	/***
+	 * The generator of stream number stream of a run seeded with seed.
+	 */
+	public static SplitMix64 forStream(long seed, long stream) {
+		return new SplitMix64(mix(seed, stream));
+	}
+
+	/***
+	 * Seed of stream number stream of a run seeded with seed. Close seeds
+	 * and stream numbers give unrelated results.
+	 */
+	public static long mix(long seed, long stream) {
+		return mix64(mix64(seed) + GOLDEN_GAMMA * (stream + 1));
+	}
+
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	@Override
+	public void setSeed(int seed) {
+		setSeed((long) seed);
+	}
+
+	@Override
+	public void setSeed(int[] seed) {
+		long value = 0;
+		for (int s : seed) {
+			value = value * 31 + s;
+		}
+		setSeed(value);
+	}
+
+	@Override
+	public void setSeed(long seed) {
+		state = seed;
+		// drop the spare gaussian, or it would carry over from the old seed
+		clear();
+	}
+
+	@Override
+	public long nextLong() {
+		state += GOLDEN_GAMMA;
+		return mix64(state);
+	}
+
+	@Override
+	protected int next(int bits) {
+		return (int) (nextLong() >>> (64 - bits));
+	}
+
+	@Override
+	public int nextInt() {
+		return (int) (nextLong() >>> 32);
+	}
+
+	@Override
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+}
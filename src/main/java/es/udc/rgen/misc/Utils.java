@@ -19,10 +19,14 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.mapred.ClusterStatus;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
 import es.udc.rgen.DataOptions;
 
@@ -82,6 +86,48 @@ public class Utils {
 		fs.close();
 	}
 
+	/***
+	 * Compression, block size and replication of a job writing final
+	 * outputs, into the result path, from the -c, -cs, -ct, -bs and -rep
+	 * options. Unset options leave the cluster defaults.
+	 */
+	public static final void setFinalOutput(DataOptions options, Configuration job) {
+		setCompression(job, options.getCodecClass(), options.getCompressionType());
+		setShuffleCompression(job, options.getShuffleCodecClass());
+		if (options.getBlockSize() > 0) {
+			job.setLong("dfs.blocksize", options.getBlockSize());
+		}
+		if (options.getReplication() > 0) {
+			job.setInt("dfs.replication", options.getReplication());
+		}
+	}
+
+	/***
+	 * Compression of a job writing intermediate outputs, into the work
+	 * path, read back by later jobs, from the -ci, -cs and -ct options.
+	 */
+	public static final void setIntermediateOutput(DataOptions options, Configuration job) {
+		setCompression(job, options.getWorkCodecClass(), options.getCompressionType());
+		setShuffleCompression(job, options.getShuffleCodecClass());
+	}
+
+	private static final void setCompression(Configuration job,
+			Class<? extends CompressionCodec> codec, CompressionType type) {
+		if (null != codec) {
+			job.setBoolean(FileOutputFormat.COMPRESS, true);
+			job.setClass(FileOutputFormat.COMPRESS_CODEC, codec, CompressionCodec.class);
+			job.set(FileOutputFormat.COMPRESS_TYPE, type.toString());
+		}
+	}
+
+	private static final void setShuffleCompression(Configuration job,
+			Class<? extends CompressionCodec> codec) {
+		if (null != codec) {
+			job.setBoolean(MRJobConfig.MAP_OUTPUT_COMPRESS, true);
+			job.setClass(MRJobConfig.MAP_OUTPUT_COMPRESS_CODEC, codec, CompressionCodec.class);
+		}
+	}
+
 	public static final int getMaxNumReds () throws IOException {
 		JobConf job = new JobConf(Utils.class);
 		JobClient client = new JobClient(job);
@@ -244,19 +290,38 @@ public class Utils {
 	}
 	
 	private static final void shareZipfCore(String fname, DataOptions options, JobConf job) throws URISyntaxException {
+		shareZipfCore(new Path(options.getWorkPath(), fname), fname, job);
+	}
 
-		DistributedCache.createSymlink(job);
+	/***
+	 * Build a ZipfCore of elems values and write it to an hdfs file, to be
+	 * shared with shareZipfCore.
+	 */
+	public static final void serialZipf(long elems, double exponent, long samples, double zoom,
+			Path zipfPath) throws IOException {
+		Zipfian zipfian = new Zipfian(elems, exponent);
+		zipfian.setupZipf(samples, zoom);
+		serialZipfCore(zipfian, zipfPath);
+	}
+
+	/***
+	 * Ship a ZipfCore file written by serialZipf to the tasks, which read it
+	 * back with getSharedZipfCore(fname, conf). Works for both mapred and
+	 * mapreduce jobs, as long as it is called before the Job copies conf.
+	 */
+	public static final void shareZipfCore(Path zipfPath, String fname, Configuration conf) throws URISyntaxException {
+
+		DistributedCache.createSymlink(conf);
 		
-		Path zipfPath = new Path(options.getWorkPath(), fname);
 		String uriWithLink = zipfPath.toString() + "#" + fname;
-		DistributedCache.addCacheFile(new URI(uriWithLink), job);
+		DistributedCache.addCacheFile(new URI(uriWithLink), conf);
 	}
 	
-	private static final ZipfCore getSharedZipfCore(String fname, JobConf job) throws IOException, ClassNotFoundException {
+	public static final ZipfCore getSharedZipfCore(String fname, Configuration conf) throws IOException, ClassNotFoundException {
 		
 		ZipfCore zipfcore = null;
 		
-		FileSystem fs = FileSystem.getLocal(job);
+		FileSystem fs = FileSystem.getLocal(conf);
 		Path symbLink = new Path(fname);
 		if (fs.exists(symbLink)) {
 			FileInputStream fi = new FileInputStream(symbLink.toString());
@@ -131,6 +131,13 @@ public class Visit {
 		rand.setSeed(randSeed);
 	}
 
+	/***
+	 * reseed the random generator for record id of a run seeded with seed
+	 */
+	public void fireRecord(long seed, long id) {
+		rand.setSeed(SplitMix64.mix(seed, id));
+	}
+
 	public String nextAccess(String url) {
 		return(nextIp() + delim +
 			url + delim +
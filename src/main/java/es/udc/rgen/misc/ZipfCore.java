@@ -18,6 +18,9 @@ public class ZipfCore implements Serializable {
 	
 	public Random rand;
 
+	// number of values drawn so far, not serialized
+	public transient long samples;
+
 	ZipfCore() {
 		rand = new Random();
 	}
@@ -33,6 +36,7 @@ public class ZipfCore implements Serializable {
 	public long simpleNext() {
 
 		long v = (long) Math.floor(rand.nextDouble() * zelems);
+		samples++;
 
 //		count++;
 		int start = 0, end = zbuck.length-2, mid;
@@ -51,6 +55,7 @@ public class ZipfCore implements Serializable {
 	public long next() {
 
 		long v = (long) Math.floor(rand.nextDouble() * zelems);
+		samples++;
 		
 		long X = (v + limit) >> divider;
 		int ipart = 63 - Long.numberOfLeadingZeros(X >> gran);
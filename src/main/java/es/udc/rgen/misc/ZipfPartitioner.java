@@ -0,0 +1,134 @@
+package es.udc.rgen.misc;
+
+import java.io.IOException;
+import java.util.PriorityQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Partitioner;
+
+/***
+ * Skew-aware partitioner for keys drawn from the shared link ZipfCore.
+ *
+ * The smallest ids of a Zipfian distribution hold most of the mass, and the
+ * ZipfCore keeps one buck per id for them (the ids before the knee point).
+ * Those heavy ids are assigned to partitions up front with a greedy
+ * longest-processing-time packing on their expected mass, so that the
+ * expected bytes per partition stay balanced. The rest of the ids, each with
+ * a small share of the mass, are hash partitioned as usual.
+ *
+ * Ids below the job's "hashsize" are counted in memory by the maps, which
+ * emit one row per id at most, so their mass says nothing of their reduce
+ * input: they are hash partitioned too, and only heavy ids from hashsize on
+ * are packed.
+ *
+ * Heavy ids are first, first+1, ..., n-1, so the lookup is a plain array
+ * access.
+ *
+ * The job must share the link ZipfCore (Utils.shareLinkZipfCore) so that the
+ * map tasks can read it.
+ */
+public class ZipfPartitioner<V> implements Partitioner<LongWritable, V> {
+
+	private static final Log log = LogFactory.getLog(ZipfPartitioner.class.getName());
+
+	public static final String HEAVY_KEYS = "zipfpartitioner.heavykeys";
+	private static final int DEFAULT_HEAVY_KEYS = 1 << 20;
+
+	private int[] heavy;
+	private long first;
+
+	private static class Bin implements Comparable<Bin> {
+		int partition;
+		double load;
+
+		Bin(int partition) {
+			this.partition = partition;
+			this.load = 0;
+		}
+
+		@Override
+		public int compareTo(Bin other) {
+			if (load != other.load) {
+				return load < other.load ? -1 : 1;
+			}
+			return partition - other.partition;
+		}
+	}
+
+	@Override
+	public void configure(JobConf job) {
+
+		ZipfCore core = null;
+		try {
+			core = Utils.getSharedLinkZipfCore(job);
+		} catch (ClassNotFoundException e) {
+			log.error("Unable to read shared link zipf core", e);
+		} catch (IOException e) {
+			log.error("Unable to read shared link zipf core", e);
+		}
+
+		int limit = job.getInt(HEAVY_KEYS, DEFAULT_HEAVY_KEYS);
+		long pages = job.getLong("pages", Long.MAX_VALUE);
+		if (limit > pages) {
+			limit = (int) pages;
+		}
+		first = job.getInt("hashsize", 0);
+
+		heavy = assignHeavyKeys(core, Math.max(1, job.getNumReduceTasks()), first, limit);
+		log.info("zipf partitioner: " + heavy.length + " heavy keys from " + first
+				+ " over " + job.getNumReduceTasks() + " partitions");
+	}
+
+	/***
+	 * Greedily pack the single-id bucks of a ZipfCore from id first on into
+	 * partitions, the heaviest first, each one into the currently lightest
+	 * partition.
+	 * @return partition of each heavy id, indexed by id - first
+	 */
+	static int[] assignHeavyKeys(ZipfCore core, int partitions, long first, int limit) {
+
+		if (null == core || null == core.xbuck || limit <= first) {
+			return new int[0];
+		}
+
+		// bucks are sorted by x, the first ones contain exactly one id each
+		int bucks = core.xbuck.length - 1;
+		int n = 0;
+		while (n < bucks && n < limit
+				&& core.xbuck[n] == n
+				&& core.xbuck[n + 1] - core.xbuck[n] == 1) {
+			n++;
+		}
+
+		if (n <= first) {
+			return new int[0];
+		}
+
+		int[] result = new int[n - (int) first];
+		PriorityQueue<Bin> bins = new PriorityQueue<Bin>(partitions);
+		for (int i=0; i<partitions; i++) {
+			bins.add(new Bin(i));
+		}
+
+		// ybuck (mass per id) is non-increasing, so ids come heaviest first
+		for (int i=(int) first; i<n; i++) {
+			Bin bin = bins.poll();
+			result[i - (int) first] = bin.partition;
+			bin.load = bin.load + core.ybuck[i];
+			bins.add(bin);
+		}
+		return result;
+	}
+
+	@Override
+	public int getPartition(LongWritable key, V value, int numPartitions) {
+		long id = key.get();
+		if (id >= first && id - first < heavy.length) {
+			return heavy[(int) (id - first)] % numPartitions;
+		}
+		return (key.hashCode() & Integer.MAX_VALUE) % numPartitions;
+	}
+}
@@ -12,11 +12,9 @@ import org.apache.hadoop.filecache.DistributedCache;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapred.FileInputFormat;
 import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
-import org.apache.hadoop.mapred.MapFileOutputFormat;
 import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.Mapper;
 import org.apache.hadoop.mapred.OutputCollector;
@@ -27,15 +25,22 @@ import org.apache.hadoop.mapred.SequenceFileOutputFormat;
 import org.apache.hadoop.mapred.TextInputFormat;
 import org.apache.hadoop.mapred.TextOutputFormat;
 import org.apache.hadoop.mapred.lib.MultipleInputs;
-import org.apache.hadoop.mapred.lib.NLineInputFormat;
 
 import es.udc.rgen.DataOptions;
-import es.udc.rgen.misc.Dummy;
+import es.udc.rgen.misc.Counters;
+import es.udc.rgen.misc.GenInfo;
+import es.udc.rgen.misc.GenStats;
 import es.udc.rgen.misc.HtmlCore;
 import es.udc.rgen.misc.JoinBytesInt;
+import es.udc.rgen.misc.LocalityInputFormat;
 import es.udc.rgen.misc.RawData;
+import es.udc.rgen.misc.RunReport;
+import es.udc.rgen.misc.SlotRangeInputFormat;
+import es.udc.rgen.misc.SlotRangeSplit;
+import es.udc.rgen.misc.SplitMix64;
 import es.udc.rgen.misc.Utils;
 import es.udc.rgen.misc.Visit;
+import es.udc.rgen.misc.ZipfPartitioner;
 
 @SuppressWarnings("deprecation")
 public class HiveData {
@@ -49,13 +54,12 @@ public class HiveData {
 	public static final String searchkeyf = "search_keys";
 	
 	private DataOptions options;
+	private GenInfo info;
 	private long visits;
 	
 	// client side delim
 	private String cdelim = ",";
 	private int chashsize = 150 * 1024 * 1024;
-	
-	private Dummy dummy;
 
 	public HiveData(DataOptions options) {
 		this.options = options;
@@ -85,32 +89,37 @@ public class HiveData {
 		job.setLong("slotpages", options.getNumSlotPages());
 		job.set("delimiter", cdelim);
 		job.setInt("hashsize", chashsize);
+		SlotRangeInputFormat.setSlots(job, options.getNumMaps(), options.getNumPages());
+		SlotRangeInputFormat.setOffset(job, info.getPages(), info.getSlots());
+		options.shareSeed(job);
 		Utils.shareLinkZipfCore(options, job);
 	}
 	
 	private void setVisitsOptions(JobConf job) {
-		job.setInt("slots", options.getNumMaps());
 		job.setLong("pages", options.getNumPages());
 		job.setLong("visits", visits);
 		job.set("delimiter", cdelim);
+		SlotRangeInputFormat.setSlots(job, options.getNumMaps(), visits);
+		SlotRangeInputFormat.setOffset(job, info.getItems(), info.getSlots());
+		options.shareSeed(job);
 	}
 
 	public static class DummyToRankingsMapper extends MapReduceBase implements
-	Mapper<LongWritable, Text, LongWritable, JoinBytesInt> {
+	Mapper<LongWritable, SlotRangeSplit, LongWritable, JoinBytesInt> {
 
 		private static final Log log = LogFactory.getLog(DummyToRankingsMapper.class.getName());
 		
 		private HtmlCore generator;
-		private long pages, slotpages;
+		private long slotpages;
 		private boolean outset;
 		private OutputCollector<LongWritable, JoinBytesInt> myout;
 		private JoinBytesInt uitem, ritem;
 		private short[] hash;
 		private HashMap<Integer, Integer> hm;
 		private int hashsize;
+		private GenStats stats;
 		
 		private void getOptions(JobConf job) {
-			pages = job.getLong("pages", 0);
 			slotpages = job.getLong("slotpages", 0);
 			hashsize = job.getInt("hashsize", 0);
 		}
@@ -135,9 +144,10 @@ public class HiveData {
 			
 			hash = new short[hashsize];
 			hm = new HashMap<Integer, Integer>();
+			stats = new GenStats(generator);
 		}
 	
-		public void map(LongWritable key, Text value, OutputCollector<LongWritable, JoinBytesInt> output,
+		public void map(LongWritable key, SlotRangeSplit value, OutputCollector<LongWritable, JoinBytesInt> output,
 				Reporter reporter) throws IOException {
 
 			if (!outset) {
@@ -145,24 +155,29 @@ public class HiveData {
 				outset = true;
 			}
 
-			int slotId = Integer.parseInt(value.toString().trim());
-			generator.fireRandom(slotId);
+			generator.fireRandom(value.getSlot());
 
-			long[] range = HtmlCore.getPageRange(slotId, pages, slotpages);
+			long[] range = value.getRange();
 
 			/**
 			 * For output collect
 			 */
 			for (long i=range[0]; i<range[1]; i++) {
+				long t = stats.start();
 				key.set(i);
 
+				generator.fireRecord(i);
 				generator.nextUrlJoinBytesInt(uitem);
+				t = stats.lap(Counters.GENERATE_NANOS, t);
 				output.collect(key, uitem);
+				t = stats.lap(Counters.WRITE_NANOS, t);
 				
 				long[] linkids = generator.genPureLinkIds();
+				t = stats.lap(Counters.GENERATE_NANOS, t);
 				for (int j=0; j<linkids.length; j++) {
 					long uid = linkids[j];
 					if (uid < hashsize) {
+						stats.add(Counters.CACHE_HITS, 1);
 						int iid = (int) uid;
 						if (hash[iid]>=0) {
 							if (hash[iid]==HtmlCore.MAX_SHORT) {
@@ -175,15 +190,18 @@ public class HiveData {
 							hm.put(iid, hm.get(iid) + 1);
 						}
 					} else {
+						stats.add(Counters.CACHE_MISSES, 1);
 						key.set(uid); 
 						output.collect(key, ritem);
 					}
 				}
+				t = stats.lap(Counters.WRITE_NANOS, t);
 				
 				if (0==(i % 10000)) {
 					log.info("still running: " + (i - range[0]) + " of " + slotpages);
 				}
 			}
+			stats.flush(reporter);
 		}
 		
 		@Override
@@ -243,9 +261,13 @@ public class HiveData {
 		private static final Log log = LogFactory.getLog(GenerateRankingsReducer.class.getName());
 
 		private Random rand;
+		private boolean seeded;
+		private long seed;
 		private int errors, missed;
 		private JoinBytesInt v;
 		private int pid;
+		private GenStats stats;
+		private Reporter reporter;
 		
 		// job side delimiter
 		private String delim;
@@ -256,8 +278,12 @@ public class HiveData {
 			delim = job.get("delimiter");
 			pid = job.getInt("mapred.task.partition", 0);
 			rand = new Random(pid + 1);
+			seeded = DataOptions.isSeeded(job);
+			// each kind of record draws from streams of its own
+			seed = SplitMix64.mix(job.getLong(DataOptions.SEED, 0), -1);
 
 			v = new JoinBytesInt();
+			stats = new GenStats();
 
 			errors = 0;
 			missed = 0;
@@ -266,6 +292,7 @@ public class HiveData {
 
 		public void close ()
 		{
+			stats.flush(reporter);
 			log.info("pid: " + pid + ", " + errors + " erros, " + missed + " missed");
 		}
 
@@ -273,6 +300,7 @@ public class HiveData {
 		public void reduce(LongWritable key, Iterator<JoinBytesInt> values,
 				OutputCollector<LongWritable, Text> output, Reporter reporter) throws IOException {
 
+			this.reporter = reporter;
 			v.clear();
 			while (values.hasNext()) {
 				v.add(values.next());
@@ -280,6 +308,9 @@ public class HiveData {
 			
 			if (0!=v.ulen) {
 				if (v.refs > 0) {
+					if (seeded) {
+						rand.setSeed(SplitMix64.mix(seed, key.get()));
+					}
 					Text value = new Text(
 							new String(v.url) +
 							delim +
@@ -290,11 +321,13 @@ public class HiveData {
 					output.collect(
 							key, value);
 							
-					reporter.incrCounter(es.udc.rgen.misc.Counters.BYTES_DATA_GENERATED, 8+value.getLength());
+					stats.add(Counters.RANDOM_DRAWS, 1);
+					stats.record(8+value.getLength());
 				} else {
 					missed++;
 				}
 			} else {
+				// also the pages of earlier runs linked by appended ones
 				errors++;					
 			}
 		}
@@ -304,7 +337,7 @@ public class HiveData {
 
 		log.info("Creating table rankings...");
 
-		Path fout = new Path(options.getResultPath(), RANKINGS);
+		Path fout = info.getOutputPath(options, RANKINGS);
 
 		JobConf job = new JobConf(HiveData.class);
 		String jobname = "Create rankings";
@@ -330,6 +363,8 @@ public class HiveData {
 		job.setMapperClass(DummyToRankingsMapper.class);
 		job.setCombinerClass(JoinBytesIntCombiner.class);
 		job.setReducerClass(GenerateRankingsReducer.class);
+		// page references follow the link zipf, balance the hottest ids
+		job.setPartitionerClass(ZipfPartitioner.class);
 
 		if (options.getNumReds() > 0) {
 			job.setNumReduceTasks(options.getNumReds());
@@ -337,14 +372,7 @@ public class HiveData {
 			job.setNumReduceTasks(Utils.getMaxNumReds());
 		}
 
-		job.setInputFormat(NLineInputFormat.class);
-		FileInputFormat.setInputPaths(job, dummy.getPath());
-
-		 job.set("mapred.map.output.compression.type", "BLOCK");
-	 	 job.set("mapreduce.output.fileoutputformat.compress.type","BLOCK");
-		 MapFileOutputFormat.setCompressOutput(job, true);
-//		MapFileOutputFormat.setOutputCompressorClass(job, org.apache.hadoop.io.compress.LzoCodec.class);
-		 MapFileOutputFormat.setOutputCompressorClass(job, org.apache.hadoop.io.compress.DefaultCodec.class);
+		job.setInputFormat(SlotRangeInputFormat.class);
 
 		if (options.isSequenceOut()) {
 			job.setOutputFormat(SequenceFileOutputFormat.class);
@@ -352,19 +380,15 @@ public class HiveData {
 			job.setOutputFormat(TextOutputFormat.class);
 		}
 		
-		if (null != options.getCodecClass()) {
-			job.set("mapred.output.compression.type","BLOCK");
-		 	job.set("mapreduce.output.fileoutputformat.compress.type","BLOCK");	
-			FileOutputFormat.setCompressOutput(job, true);
-			FileOutputFormat.setOutputCompressorClass(job, options.getCodecClass());
-		}
+		Utils.setFinalOutput(options, job);
 
 		FileOutputFormat.setOutputPath(job, fout);
 
 		log.info("Running Job: " +jobname);
-		log.info("Pages file " + dummy.getPath() + " as input");
+		log.info(options.getNumMaps() + " slots as input");
 		log.info("Rankings file " + fout + " as output");
-		JobClient.runJob(job);
+		RunReport.add(JobClient.runJob(job));
+		info.commitOutput(options, RANKINGS);
 		log.info("Finished Running Job: " + jobname);
 	}
 
@@ -376,12 +400,12 @@ public class HiveData {
 	 *
 	 */
 	public static class DummyToAccessNoMapper extends MapReduceBase implements
-	Mapper<LongWritable, Text, LongWritable, JoinBytesInt> {
+	Mapper<LongWritable, SlotRangeSplit, LongWritable, JoinBytesInt> {
 	
 		private JoinBytesInt vitem;
 		private long pages;
-		private long slots;
-		private long visits;
+		private boolean seeded;
+		private long seed;
 		
 		// job side delimiter
 		private String delim;
@@ -391,9 +415,9 @@ public class HiveData {
 		{
 			try {
 				pages = job.getLong("pages", 0);
-				slots = job.getLong("slots", 0);
-				visits = job.getLong("visits", 0);
 				delim = job.get("delimiter");
+				seeded = DataOptions.isSeeded(job);
+				seed = SplitMix64.mix(job.getLong(DataOptions.SEED, 0), -2);
 	
 				visit = new Visit(DistributedCache.getLocalCacheFiles(job),
 						delim, pages);
@@ -407,18 +431,20 @@ public class HiveData {
 		}
 	
 		@Override
-		public void map(LongWritable key, Text value,
+		public void map(LongWritable key, SlotRangeSplit value,
 				OutputCollector<LongWritable, JoinBytesInt> output, Reporter reporter)
 						throws IOException {
 	
-			int slotId = Integer.parseInt(value.toString().trim());
-			visit.fireRandom(slotId);
+			visit.fireRandom(value.getSlot());
 
-			for (long i=slotId; i<=visits;) {
+			long[] range = value.getRange();
+			for (long i=range[0]; i<range[1]; i++) {
+				if (seeded) {
+					visit.fireRecord(seed, i);
+				}
 				// simply setting url id is fine in map step
 				key.set(visit.nextUrlId());
 				output.collect(key, vitem);
-				i = i + slots;
 			}
 		}
 	}
@@ -479,6 +505,10 @@ public class HiveData {
 		// job side delimiter
 		private String delim;
 		private int pid;
+		private boolean seeded;
+		private long seed;
+		private GenStats stats;
+		private Reporter reporter;
 	
 		public void configure (JobConf job)
 		{
@@ -486,12 +516,15 @@ public class HiveData {
 				pages = job.getLong("pages", 0);
 				delim = job.get("delimiter");
 				pid = job.getInt("mapred.task.partition", 0);
+				seeded = DataOptions.isSeeded(job);
+				seed = SplitMix64.mix(job.getLong(DataOptions.SEED, 0), -3);
 	
 				visit = new Visit(DistributedCache.getLocalCacheFiles(job),
 						delim, pages);
 				visit.fireRandom(pid + 1);
 				
 				vitem = new JoinBytesInt();
+				stats = new GenStats();
 				
 				errors = 0;
 				missed = 0;
@@ -504,6 +537,7 @@ public class HiveData {
 
 		public void close ()
 		{
+			stats.flush(reporter);
 			log.info("pid: " + pid + ", " + errors + " erros, " + missed + " missed");
 		}
 
@@ -515,6 +549,7 @@ public class HiveData {
 		public void reduce(LongWritable key, Iterator<JoinBytesInt> values,
 				OutputCollector<LongWritable, Text> output, Reporter reporter) throws IOException {
 			
+			this.reporter = reporter;
 			vitem.clear();
 //			StringBuffer sb = new StringBuffer("Reduce: " + v.toString());
 			while (values.hasNext()) {
@@ -525,10 +560,16 @@ public class HiveData {
 			
 			if (0!=vitem.ulen) {
 				if (vitem.refs > 0) {
+					if (seeded) {
+						visit.fireRecord(seed, key.get());
+					}
 					for (int i=0; i<vitem.refs; i++) {
+						long t = stats.start();
 						Text value = new Text(visit.nextAccess(new String(vitem.url)));
+						t = stats.lap(Counters.GENERATE_NANOS, t);
 						output.collect(key, value);
-						reporter.incrCounter(es.udc.rgen.misc.Counters.BYTES_DATA_GENERATED, 8+value.getLength());
+						t = stats.lap(Counters.WRITE_NANOS, t);
+						stats.record(8+value.getLength());
 					}
 				} else {
 					missed++;
@@ -543,8 +584,9 @@ public class HiveData {
 
 		log.info("Creating user visits...");
 
+		// the visits of appended runs go to the pages of every run
 		Path rankings = new Path(options.getResultPath(), RANKINGS);
-		Path fout = new Path(options.getResultPath(), USERVISITS);
+		Path fout = info.getOutputPath(options, USERVISITS);
 
 		JobConf job = new JobConf(HiveData.class);
 		String jobname = "Create uservisits";
@@ -574,15 +616,18 @@ public class HiveData {
 		job.setMapOutputKeyClass(LongWritable.class);
 		job.setMapOutputValueClass(JoinBytesInt.class);
 
-		MultipleInputs.addInputPath(job, dummy.getPath(),
-				NLineInputFormat.class, DummyToAccessNoMapper.class);
+		// the slots read no file, the work path only keys their input
+		MultipleInputs.addInputPath(job, options.getWorkPath(),
+				SlotRangeInputFormat.class, DummyToAccessNoMapper.class);
 
 		if (options.isSequenceOut()) {
+			LocalityInputFormat.setInputFormat(job, SequenceFileInputFormat.class);
 			MultipleInputs.addInputPath(job, rankings,
-					SequenceFileInputFormat.class, SequenceRankingsToUrlsMapper.class);
+					LocalityInputFormat.class, SequenceRankingsToUrlsMapper.class);
 		} else {
+			LocalityInputFormat.setInputFormat(job, TextInputFormat.class);
 			MultipleInputs.addInputPath(job, rankings,
-					TextInputFormat.class, TextRankingsToUrlsMapper.class);
+					LocalityInputFormat.class, TextRankingsToUrlsMapper.class);
 		}
 
 		job.setCombinerClass(JoinBytesIntCombiner.class);
@@ -602,20 +647,16 @@ public class HiveData {
 			job.setOutputFormat(TextOutputFormat.class);
 		}
 		
-		if (null != options.getCodecClass()) {
-			job.set("mapred.output.compression.type","BLOCK");
-                        job.set("mapreduce.output.fileoutputformat.compress.type","BLOCK");
-			FileOutputFormat.setCompressOutput(job, true);
-			FileOutputFormat.setOutputCompressorClass(job, options.getCodecClass());
-		}
+		Utils.setFinalOutput(options, job);
 		
 		FileOutputFormat.setOutputPath(job, fout);
 		
 		log.info("Running Job: " +jobname);
-		log.info("Dummy file " + dummy.getPath() + " as input");
+		log.info(options.getNumMaps() + " slots as input");
 		log.info("Rankings file " + rankings + " as input");
 		log.info("Ouput file " + fout);
-		JobClient.runJob(job);
+		RunReport.add(JobClient.runJob(job));
+		info.commitOutput(options, USERVISITS);
 		log.info("Finished Running Job: " + jobname);
 	}
 
@@ -624,8 +665,12 @@ public class HiveData {
 		log.info("Generating hive data files...");
 		init();
 		
-		createRankingsTableDirectly();
-		createUserVisitsTableDirectly();
+		if (options.getNumPages() > info.getPages()) {
+			createRankingsTableDirectly();
+		}
+		if (visits > info.getItems()) {
+			createUserVisitsTableDirectly();
+		}
 		
 		close();
 	}
@@ -640,19 +685,30 @@ public class HiveData {
 
 		log.info("Initializing hive date generator...");
 
-		Utils.checkHdfsPath(options.getResultPath(), true);
+		if (options.isAppend()) {
+			info = GenInfo.read(options.getResultPath());
+			info.checkAppend(options);
+			if (options.getNumPages() < info.getPages() || visits < info.getItems()) {
+				throw new IOException("Hive data already has " + info.getPages() + " pages and "
+						+ info.getItems() + " visits");
+			}
+		} else {
+			info = new GenInfo();
+			Utils.checkHdfsPath(options.getResultPath(), true);
+		}
 		Utils.checkHdfsPath(options.getWorkPath(), true);
 
 		loadFiles();
 		
+		// links of the new pages follow the zipf of all of them
 		Utils.serialLinkZipf(options);
-		
-		dummy = new Dummy(options.getWorkPath(), options.getNumMaps());
 	}
 
 	public void close() throws IOException {
 
 		log.info("Closing hive data generator...");
+		info.addRun(options, options.getNumPages(), visits, options.getNumMaps());
+		info.write(options.getResultPath());
 		Utils.checkHdfsPath(options.getWorkPath());
 	}
 }
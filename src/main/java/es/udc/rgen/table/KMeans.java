@@ -47,6 +47,9 @@ import org.uncommons.maths.random.GaussianGenerator;
 import org.uncommons.maths.random.MersenneTwisterRNG;
 
 import es.udc.rgen.DataOptions;
+import es.udc.rgen.misc.Counters;
+import es.udc.rgen.misc.GenStats;
+import es.udc.rgen.misc.RunReport;
 import es.udc.rgen.misc.Utils;
 
 import org.uncommons.maths.random.ContinuousUniformGenerator;
@@ -246,17 +249,23 @@ public class KMeans extends Configured {
                     }
 
                     //generate samples
+                    GenStats stats = new GenStats();
                     double[] vec = new double[dimension];
                     for (long count = 0; count < numSamples; count++) {
+                        long t = stats.start();
                         for (int d = 0; d < dimension; d++)
                             vec[d] = gg[d].nextValue();
+                        t = stats.lap(Counters.GENERATE_NANOS, t);
                         Vector p = new RandomAccessSparseVector(dimension);
                         p.assign(vec);
+                        t = stats.lap(Counters.ENCODE_NANOS, t);
                         output.collect(new LongWritable(count), new VectorWritable(p));
+                        t = stats.lap(Counters.WRITE_NANOS, t);
                         reporter.setStatus(Long.toString(count + 1) + " samples generated");
-                        reporter.incrCounter(es.udc.rgen.misc.Counters.BYTES_DATA_GENERATED,
-                                8 + p.getNumNondefaultElements() * 8);
+                        stats.add(Counters.RANDOM_DRAWS, dimension);
+                        stats.record(8 + p.getNumNondefaultElements() * 8);
                     }
+                    stats.flush(reporter);
                 } catch (Exception e) {
                     log.warn("Exception in GussianSampleGenerator.MapClass");
                     e.printStackTrace();
@@ -365,7 +374,7 @@ public class KMeans extends Configured {
                 jobConf.setOutputValueClass(VectorWritable.class);
             }
             jobConf.setNumReduceTasks(0);
-            JobClient.runJob(jobConf);
+            RunReport.add(JobClient.runJob(jobConf));
 
             return this.numSamples;
         }
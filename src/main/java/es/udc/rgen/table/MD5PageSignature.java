@@ -0,0 +1,41 @@
+package es.udc.rgen.table;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/***
+ * MD5 of the page content, the same signature nutch's MD5Signature computes.
+ * Each thread reuses its own MessageDigest.
+ */
+public class MD5PageSignature extends PageSignature {
+
+	private static final int MD5_LENGTH = 16;
+
+	private static final ThreadLocal<MessageDigest> md5 = new ThreadLocal<MessageDigest>() {
+		@Override
+		protected MessageDigest initialValue() {
+			try {
+				return MessageDigest.getInstance("MD5");
+			} catch (NoSuchAlgorithmException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	};
+
+	@Override
+	public int length() {
+		return MD5_LENGTH;
+	}
+
+	@Override
+	public void digest(byte[] data, int offset, int length, byte[] out) {
+		MessageDigest digester = md5.get();
+		digester.update(data, offset, length);
+		try {
+			digester.digest(out, 0, MD5_LENGTH);
+		} catch (DigestException e) {
+			throw new IllegalArgumentException("digest buffer too small: " + out.length, e);
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package es.udc.rgen.table;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+
+/***
+ * Appends records to a MapFile.Writer, either directly on the caller thread
+ * or from its own background thread through a bounded queue. In the latter
+ * case compression and I/O of several outputs overlap instead of running
+ * one after another on the task thread.
+ *
+ * Keys and values handed to append must not be reused by the caller.
+ */
+@SuppressWarnings("rawtypes")
+class MapFileAppender implements Runnable {
+
+	private static class Entry {
+		WritableComparable key;
+		Writable value;
+
+		Entry(WritableComparable key, Writable value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	private static final Entry CLOSE = new Entry(null, null);
+
+	private MapFile.Writer writer;
+	private BlockingQueue<Entry> queue;
+	private Thread thread;
+	private volatile IOException error;
+
+	/***
+	 * @param queueSize pending records allowed, 0 or less to append directly
+	 */
+	MapFileAppender(String name, MapFile.Writer writer, int queueSize) {
+		this.writer = writer;
+		if (queueSize > 0) {
+			queue = new ArrayBlockingQueue<Entry>(queueSize);
+			thread = new Thread(this, name);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	public void append(WritableComparable key, Writable value) throws IOException {
+		if (null == thread) {
+			writer.append(key, value);
+			return;
+		}
+		checkError();
+		try {
+			queue.put(new Entry(key, value));
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("interrupted while queueing record " + key);
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			Entry entry = queue.take();
+			while (CLOSE != entry) {
+				// keep draining after a failure so that append never blocks forever
+				if (null == error) {
+					try {
+						writer.append(entry.key, entry.value);
+					} catch (IOException e) {
+						error = e;
+					}
+				}
+				entry = queue.take();
+			}
+		} catch (InterruptedException e) {
+			error = new InterruptedIOException("writer thread " + thread.getName() + " interrupted");
+		}
+	}
+
+	public void close() throws IOException {
+		if (null != thread) {
+			try {
+				queue.put(CLOSE);
+				thread.join();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException("interrupted while closing " + thread.getName());
+			}
+		}
+		writer.close();
+		checkError();
+	}
+
+	private void checkError() throws IOException {
+		if (null != error) {
+			throw error;
+		}
+	}
+}
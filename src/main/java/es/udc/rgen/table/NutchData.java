@@ -2,7 +2,6 @@ package es.udc.rgen.table;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
-import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
@@ -15,10 +14,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.MD5Hash;
-import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapred.FileInputFormat;
 import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
@@ -28,8 +24,6 @@ import org.apache.hadoop.mapred.Mapper;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reducer;
 import org.apache.hadoop.mapred.Reporter;
-import org.apache.hadoop.mapred.lib.NLineInputFormat;
-import org.apache.nutch.crawl.CrawlDatum;
 import org.apache.nutch.crawl.Inlink;
 import org.apache.nutch.crawl.Inlinks;
 import org.apache.nutch.metadata.Metadata;
@@ -38,14 +32,18 @@ import org.apache.nutch.parse.Outlink;
 import org.apache.nutch.parse.ParseData;
 import org.apache.nutch.parse.ParseStatus;
 import org.apache.nutch.parse.ParseText;
-import org.apache.nutch.util.StringUtil;
 
 import es.udc.rgen.DataOptions;
-import es.udc.rgen.misc.Dummy;
+import es.udc.rgen.misc.Counters;
+import es.udc.rgen.misc.GenInfo;
+import es.udc.rgen.misc.GenStats;
 import es.udc.rgen.misc.HtmlCore;
 import es.udc.rgen.misc.IndexedMapFile;
 import es.udc.rgen.misc.RawData;
 import es.udc.rgen.misc.References;
+import es.udc.rgen.misc.RunReport;
+import es.udc.rgen.misc.SlotRangeInputFormat;
+import es.udc.rgen.misc.SlotRangeSplit;
 import es.udc.rgen.misc.Utils;
 
 public class NutchData {
@@ -61,104 +59,76 @@ public class NutchData {
 	private static final String SEGMENTS_DIR_NAME = "segments";
 	
 	private DataOptions options;
-	private Dummy dummy;
+	private GenInfo info;
 
 	private static final String NUTCH_WORK_DIR_PARAM_NAME = "nutch.working.dir";
+	private static final String NUTCH_FETCH_TIME_PARAM_NAME = "nutch.fetch.time";
 	private static final String URLS_DIR_NAME = "urls";
 	private Path segment = null;
+	private long fetchTime = System.currentTimeMillis();
 
 	public NutchData(DataOptions options) {
 		this.options = options;
 		parseArgs(options.getRemainArgs());
 	}
 	
-	private void parseArgs(String[] args) {}
+	private String signature = null;
+
+	private void parseArgs(String[] args) {
+
+		for (int i=0; i<args.length; i++) {
+			if ("-sig".equals(args[i])) {
+				signature = args[++i];
+				if (!"md5".equals(signature) && !"murmur3".equals(signature)) {
+					DataOptions.printUsage("Unknown nutch page signature --> " + signature + " <--");
+				}
+			} else {
+				DataOptions.printUsage("Unknown nutch data arguments --> " + args[i] + " <--");
+			}
+		}
+	}
 	
 	private static class CreateUrlHash extends MapReduceBase implements
-	Mapper<LongWritable, Text, LongWritable, Text> {
+	Mapper<LongWritable, SlotRangeSplit, LongWritable, Text> {
 
 		private static final Log log = LogFactory.getLog(CreateUrlHash.class.getName());
 		
-		private Path workdir;
 		private HtmlCore generator;
-		private JobConf job;
+		private GenStats stats;
 
 		public void configure(JobConf job) {
 
 			try {
-				workdir = new Path(job.get(NUTCH_WORK_DIR_PARAM_NAME));
 				generator = new HtmlCore(job);
-				this.job = job;
+				stats = new GenStats(generator);
 			} catch (IOException e) {
 				// TODO Auto-generated catch block
 				e.printStackTrace();
 			}
 		}
 
-		@SuppressWarnings("deprecation")
 		@Override
-		public void map(LongWritable key, Text value,
+		public void map(LongWritable key, SlotRangeSplit value,
 				OutputCollector<LongWritable, Text> output, Reporter reporter)
 				throws IOException {
 			
-			int slotId = Integer.parseInt(value.toString().trim());
+			int slotId = value.getSlot();
 			generator.fireRandom(slotId);
 			
-			try {
-				DecimalFormat df = new DecimalFormat("00000");
-				String name = "part-" + df.format(slotId);
-				FileSystem fs = workdir.getFileSystem(job);
-
-				Path crawldb =
-						new Path(new Path (new Path(workdir, CRAWLDB_DIR_NAME), "current"), name);
-				SequenceFile.Writer crawldbOut =
-						new SequenceFile.Writer(fs, job, crawldb, Text.class, CrawlDatum.class);
-				
-				Path crawl =
-						new Path(new Path(workdir, CrawlDatum.PARSE_DIR_NAME), name);
-				SequenceFile.Writer crawlOut =
-						new SequenceFile.Writer(fs, job, crawl, Text.class, CrawlDatum.class);
-				
-				Path generate =
-						new Path(new Path(workdir, CrawlDatum.FETCH_DIR_NAME), name);
-				SequenceFile.Writer generateOut =
-						new SequenceFile.Writer(fs, job, generate, Text.class, CrawlDatum.class);
-				
-				CrawlDatum datum = new CrawlDatum();
-				
-				long i = slotId - 1;
-				while (i < generator.totalpages) {
-					key.set(i);
-					Text textUrl = generator.nextUrlText();
-					
-					if (i < generator.pages) {
-						datum.setStatus(CrawlDatum.STATUS_FETCH_SUCCESS);
-						crawlOut.append(textUrl, datum);
-						
-						datum.setStatus(CrawlDatum.STATUS_FETCH_SUCCESS);
-						generateOut.append(textUrl, datum);
-
-						datum.setStatus(CrawlDatum.STATUS_DB_FETCHED);
-						crawldbOut.append(textUrl, datum);
-					} else {
-						datum.setStatus(CrawlDatum.STATUS_LINKED);
-						crawldbOut.append(textUrl, datum);
-					}
-					output.collect(key, textUrl);
-
-					if (0==((i / generator.slots) % 10000)) {
-						log.info("still running: " + i + " of <" + generator.pages + ", " + generator.totalpages +">");
-					}
-					i = i + generator.slots;
+			long i = slotId - 1;
+			while (i < generator.totalpages) {
+				key.set(i);
+				generator.fireRecord(i);
+				Text url = generator.nextUrlText();
+				output.collect(key, url);
+				stats.record(8 + url.getLength());
+
+				if (0==((i / generator.slots) % 10000)) {
+					log.info("still running: " + i + " of <" + generator.pages + ", " + generator.totalpages +">");
 				}
-
-				crawlOut.close();
-				crawldbOut.close();
-				generateOut.close();
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				i = i + generator.slots;
 			}
+			stats.flush(reporter);
 		}
 	}
 
@@ -175,7 +145,7 @@ public class NutchData {
 				References links = values.next();
 				if (links.len > 0) {
 					if (null == sum) {
-						sum = links;
+						sum = new References(links.len, links.refs);
 					} else {
 						long[] ids = new long[links.len + sum.len];
 						int j = 0;
@@ -184,9 +154,13 @@ public class NutchData {
 						sum = new References(ids.length, ids);
 					}
 				} else {
+					// outlinks and linked marks pass through
 					output.collect(key, links);
 				}
 			}
+			if (null != sum) {
+				output.collect(key, sum);
+			}
 		}
 	}
 	
@@ -198,7 +172,12 @@ public class NutchData {
 		private HtmlCore generator;
 		private IndexedMapFile indexedUrls;
 		private String segName;
-		private long[] cost;
+		private String fetchTime;
+		private PageSignature signature;
+		private Text content;
+		private GenStats stats;
+		private int pid;
+		private Reporter reporter;
 
 		public void configure(JobConf job) {
 
@@ -207,11 +186,13 @@ public class NutchData {
 				
 				indexedUrls = Utils.getSharedMapFile(URLS_DIR_NAME, job);
 
-				int pid = job.getInt("mapred.task.partition", 0);
+				pid = job.getInt("mapred.task.partition", 0);
 				generator.fireRandom(pid * 1000 + 1);
 				segName = job.get(Nutch.SEGMENT_NAME_KEY);
-				
-				cost = new long[6];
+				fetchTime = Long.toString(getFetchTime(job));
+				signature = PageSignature.get(job);
+				content = new Text();
+				stats = new GenStats(generator);
 			} catch (IOException e) {
 				// TODO Auto-generated catch block
 				e.printStackTrace();
@@ -223,18 +204,20 @@ public class NutchData {
 				OutputCollector<Text, NutchParse> output, Reporter reporter)
 				throws IOException {
 
-//			log.info("0> one new value ...");
-			Date d = new Date();
-			long[] start = new long[7];
-			
-			start[0] = d.getTime();
+			this.reporter = reporter;
+
+			long t = stats.start();
 			References olinks = null;
 			References ilinks = null;
+			boolean linked = false;
 			while (values.hasNext()) {
 				References links = values.next();
-				if (links.len > 0) {
+				if (References.LINKED == links.len) {
+					linked = true;
+				} else if (links.len > 0) {
 					if (null == ilinks) {
-						ilinks = links;
+						// the values are read into the same object, keep its fields
+						ilinks = new References(links.len, links.refs);
 					} else {
 						long[] ids = new long[links.len + ilinks.len];
 						int j = 0;
@@ -243,76 +226,79 @@ public class NutchData {
 						ilinks = new References(ids.length, ids);
 					}
 				} else {
-					olinks = links;
+					olinks = new References(links.len, links.refs);
 				}
 			}
-//			log.info("1> olinks & ilinks ready ...");
-			d = new Date();
-			start[1] = d.getTime();
 			
+			if (null == olinks) {
+				// a page outside the crawl, or of an earlier run, with only its inlinks new
+				Inlinks inlinks = (null == ilinks) ? null : toInlinks(ilinks);
+				output.collect(key, new NutchParse(inlinks, linked));
+				return;
+			}
+			
+			generator.fireRecord(key);
 			String[] txtContent = generator.genPageWordsAndTitls();
 			ParseText text = new ParseText(txtContent[0]);
-//			log.info("2> text & titles ready ...");
-			d = new Date();
-			start[2] = d.getTime();
+			t = stats.lap(Counters.GENERATE_NANOS, t);
 			
 			Outlink[] outlinks = new Outlink[-olinks.len];
 			for (int i=0; i<-olinks.len; i++) {
 				outlinks[i] = new Outlink(indexedUrls.get(olinks.refs[i]).toString());
 			}
-			d = new Date();
-			start[3] = d.getTime();
 			
 			Metadata contentMeta = new Metadata();
 			contentMeta.add(Nutch.SEGMENT_NAME_KEY, segName);
-		    contentMeta.add(Nutch.SIGNATURE_KEY,
-		    		StringUtil.toHexString(MD5Hash.digest(txtContent[0].getBytes()).getDigest()));
+			contentMeta.add(Nutch.FETCH_TIME_KEY, fetchTime);
+			// the page is encoded once (utf-8, as written in parse_text) into a reused buffer
+			content.set(txtContent[0]);
+			contentMeta.add(Nutch.SIGNATURE_KEY,
+					signature.calculateHex(content.getBytes(), 0, content.getLength()));
 
 			ParseData data = new ParseData(new ParseStatus(ParseStatus.SUCCESS), txtContent[1], outlinks, contentMeta, new Metadata());
-//			log.info("3> outlinks ready ...");
-			d = new Date();
-			start[4] = d.getTime();
 			
+			Inlinks inlinks = toInlinks(ilinks);
+			t = stats.lap(Counters.ENCODE_NANOS, t);
+			
+			NutchParse parse = new NutchParse(inlinks, text, data);
+			output.collect(key, parse);
+			t = stats.lap(Counters.WRITE_NANOS, t);
+			stats.record(content.getLength());
+		}
+		
+		private Inlinks toInlinks(References ilinks) throws IOException {
 			Inlinks inlinks = new Inlinks();
 			if (null != ilinks) {
 				for (int i=0; i<ilinks.len; i++) {
 					inlinks.add(new Inlink(indexedUrls.get(ilinks.refs[i]).toString()));
 				}
-			}			
-//			log.info("4> inlinks ready ...");
-			d = new Date();
-			start[5] = d.getTime();
-			
-			NutchParse parse = new NutchParse(inlinks, text, data);
-			output.collect(key, parse);
-
-//			log.info("5> output finished ...");
-			d = new Date();
-			start[6] = d.getTime();
-			for (int i=0; i<cost.length; i++) {
-				cost[i] = cost[i] + start[i+1] - start[i];
 			}
+			return inlinks;
 		}
 		
-		public void close() {
-//			log.info("5>>>>>>>> all finished ...");
-			log.info("<<Time>> o/ilinks: " + cost[0] + ", text: " + cost[1]
-					+ ", outlinks: " + cost[2] + ", md5: " + cost[3]
-					+ ", inlinks: " + cost[4] + ", write: " + cost[5]);
+		public void close() throws IOException {
+			indexedUrls.close();
+			stats.flush(reporter);
 		}
 	}
 	
 	private static class CreateNutchPages extends MapReduceBase implements
-	Mapper<LongWritable, Text, Text, References> {
+	Mapper<LongWritable, SlotRangeSplit, Text, References> {
 
 		private static final Log log = LogFactory.getLog(CreateNutchPages.class.getName());
 		
+		private static final References LINKED = new References(References.LINKED, null);
+		
 		private HtmlCore generator;
 		IndexedMapFile indexedUrls;
+		private GenStats stats;
+		private long firstPage;
 
 		public void configure(JobConf job) {
 			try {
+				firstPage = job.getLong(SlotRangeInputFormat.FIRST_ID, 0);
 				generator = new HtmlCore(job);
+				stats = new GenStats(generator);
 				indexedUrls = Utils.getSharedMapFile(URLS_DIR_NAME, job);
 			} catch (IOException e) {
 				// TODO Auto-generated catch block
@@ -321,29 +307,32 @@ public class NutchData {
 		}
 
 		@Override
-		public void map(LongWritable key, Text value,
+		public void map(LongWritable key, SlotRangeSplit value,
 				OutputCollector<Text, References> output, Reporter reporter)
 				throws IOException {
 			
-			int slotId = Integer.parseInt(value.toString().trim());
-			generator.fireRandom(slotId);
+			generator.fireRandom(value.getSlot());
 			
+			long[] range = value.getRange();
 			HashMap<Long, References> hash = new HashMap<Long, References>();
 			try {
-				long i = slotId - 1;
-				while (i < generator.pages) {
+				for (long i=range[0]; i<range[1]; i++) {
 					
+					// ids below 0 keep the links apart from the url of the page
+					generator.fireRecord(~i);
 					References olinks = generator.genPageLinks();
 					
 					for (int j=0; j<-olinks.len; j++) {
 						long to = olinks.refs[j];
 						References froms = hash.get(to);
 						if (null != froms) {
+							stats.add(Counters.CACHE_HITS, 1);
 							if (froms.len == froms.refs.length) {
 								output.collect(indexedUrls.get(to), froms);
 								froms.len = 0;
 							}
 						} else {
+							stats.add(Counters.CACHE_MISSES, 1);
 							if (hash.size() > CACHE_REF_SET_SIZE) {
 								for (Entry<Long, References> entry : hash.entrySet()) {
 									output.collect(indexedUrls.get(entry.getKey()), entry.getValue());
@@ -357,18 +346,26 @@ public class NutchData {
 					}
 					output.collect(indexedUrls.get(i), olinks);
 					
-					if (0==((i / generator.slots) % 10000)) {
-						log.info("still running: " + i + " of " + generator.pages);
+					if (0==((i - range[0]) % 10000)) {
+						log.info("still running: " + (i - range[0]) + " of " + (range[1] - range[0]));
 					}
-
-					i = i + generator.slots;
 				}
 				
 				for (Entry<Long, References> entry : hash.entrySet()) {
 					output.collect(indexedUrls.get(entry.getKey()), entry.getValue());
 				}
 				hash.clear();
+				
+				// the pages outside the crawl, in shares following those of the pages
+				long span = generator.pages - firstPage;
+				long outpages = generator.totalpages - generator.pages;
+				long first = generator.pages + (range[0] - firstPage) * outpages / span;
+				long end = generator.pages + (range[1] - firstPage) * outpages / span;
+				for (long i=first; i<end; i++) {
+					output.collect(indexedUrls.get(i), LINKED);
+				}
 				indexedUrls.close();
+				stats.flush(reporter);
 			} catch (IOException e) {
 				// TODO Auto-generated catch block
 				e.printStackTrace();
@@ -381,18 +378,24 @@ public class NutchData {
 
 		job.setLong("pages", options.getNumPages() );
 		job.setLong("slotpages", options.getNumSlotPages());
+		SlotRangeInputFormat.setSlots(job, options.getNumMaps(), options.getNumPages());
+		options.shareSeed(job);
 
 		Utils.shareLinkZipfCore(options, job);
 		Utils.shareWordZipfCore(options, job);
 		
 		job.set(NUTCH_WORK_DIR_PARAM_NAME , options.getResultPath().toString());
+		job.setLong(NUTCH_FETCH_TIME_PARAM_NAME, fetchTime);
+		if ("murmur3".equals(signature)) {
+			job.setClass(PageSignature.SIGNATURE_CLASS, Murmur3PageSignature.class, PageSignature.class);
+		}
 		
 //		job.set(DataOptions.URL_MAP_NAME, paths.getPath(DataPaths.URLS).toString());
 	}
 	
 	public String generateSegmentName() {
 		SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddHHmmss");
-		return sdf.format(new Date(System.currentTimeMillis()));
+		return sdf.format(new Date(fetchTime));
 	}
 
 	private void createNutchUrls() throws IOException, URISyntaxException {
@@ -408,8 +411,7 @@ public class NutchData {
 
 		setNutchOptions(job);
 		
-		FileInputFormat.setInputPaths(job, dummy.getPath());
-		job.setInputFormat(NLineInputFormat.class);
+		job.setInputFormat(SlotRangeInputFormat.class);
 
 		job.setMapperClass(CreateUrlHash.class);
 		job.setNumReduceTasks(0);
@@ -420,6 +422,7 @@ public class NutchData {
 		job.setOutputKeyClass(LongWritable.class);
 		job.setOutputValueClass(Text.class);
 		MapFileOutputFormat.setOutputPath(job, urls);
+		Utils.setIntermediateOutput(options, job);
 		
 //		SequenceFileOutputFormat.setOutputPath(job, fout);
 /*		
@@ -429,9 +432,9 @@ public class NutchData {
 */		
 
 		log.info("Running Job: " +jobname);
-		log.info("Pages file " + dummy.getPath() + " as input");
+		log.info(options.getNumMaps() + " slots as input");
 		log.info("Rankings file " + urls + " as output");
-		JobClient.runJob(job);
+		RunReport.add(JobClient.runJob(job));
 		log.info("Finished Running Job: " + jobname);
 
 		log.info("Cleaning temp files...");
@@ -444,24 +447,33 @@ public class NutchData {
 
 		JobConf job = new JobConf(NutchData.class);
 		
+		// every task gets all the url parts through the distributed cache and
+		// looks urls up by id on local disk, the input itself is only slot
+		// ranges: there are no blocks for LocalityInputFormat to place
 		Utils.shareUrls(URLS_DIR_NAME, options, job);
 		Utils.shareDict(options, job);
 		
 		setNutchOptions(job);
 		
 		Path fsegments = new Path(options.getResultPath(), SEGMENTS_DIR_NAME);
-		Utils.checkHdfsPath(fsegments, true);
+		if (options.isAppend()) {
+			Utils.createHdfsDir(fsegments);
+		} else {
+			Utils.checkHdfsPath(fsegments, true);
+		}
 		
 		segment = new Path(fsegments, generateSegmentName());
 		Utils.checkHdfsPath(segment, true);
 		
+		// only the new pages are crawled in this segment, the urls are those of all
+		SlotRangeInputFormat.setOffset(job, info.getPages(), info.getSlots());
+		
 		String jobname = "Create nutch index data";
 		job.setJobName(jobname);
 		
 		job.set(Nutch.SEGMENT_NAME_KEY, segment.getName());
 		
-		FileInputFormat.setInputPaths(job, dummy.getPath());
-		job.setInputFormat(NLineInputFormat.class);
+		job.setInputFormat(SlotRangeInputFormat.class);
 
 		job.setMapperClass(CreateNutchPages.class);
 		job.setCombinerClass(CombineReferences.class);
@@ -479,11 +491,12 @@ public class NutchData {
 		job.setMapOutputValueClass(References.class);
 		job.setOutputKeyClass(Text.class);
 		job.setOutputValueClass(NutchParse.class);
+		Utils.setFinalOutput(options, job);
 
 		log.info("Running Job: " + jobname);
-		log.info("Pages file " + dummy.getPath() + " as input");
+		log.info(options.getNumMaps() + " slots as input");
 		log.info("Rankings file " + segment + " as output");
-		JobClient.runJob(job);
+		RunReport.add(JobClient.runJob(job));
 		log.info("Finished Running Job: " + jobname);
 
 		log.info("Cleaning temp files...");
@@ -494,7 +507,18 @@ public class NutchData {
 
 		log.info("Initializing Nutch data generator...");
 
-		Utils.checkHdfsPath(options.getResultPath(), true);
+		if (options.isAppend()) {
+			info = GenInfo.read(options.getResultPath());
+			info.checkAppend(options);
+			if (options.getNumPages() <= info.getPages()) {
+				throw new IOException("Nutch data already has " + info.getPages() + " pages");
+			}
+		} else {
+			info = new GenInfo();
+			// urls are only regenerated the same from a seed
+			info.setAppendable(options.hasSeed());
+			Utils.checkHdfsPath(options.getResultPath(), true);
+		}
 		Utils.checkHdfsPath(options.getWorkPath(), true);
 		
 		int words = RawData.putDictToHdfs(new Path(options.getWorkPath(), HtmlCore.getDictName()), options.getNumWords());
@@ -502,8 +526,6 @@ public class NutchData {
 		
 		Utils.serialLinkZipf(options);
 		Utils.serialWordZipf(options);
-
-		dummy = new Dummy(options.getWorkPath(), options.getNumMaps());
 	}
 /*	
 	private void test2LevelMapFile(Path furl) throws IOException {
@@ -524,25 +546,38 @@ public class NutchData {
 		createNutchUrls();
 		createNutchIndexData();
 		
-		Path ffetch = new Path(options.getResultPath(), CrawlDatum.FETCH_DIR_NAME);
-		Path fparse = new Path(options.getResultPath(), CrawlDatum.PARSE_DIR_NAME);
 		Path linkdb = new Path(segment, LINKDB_DIR_NAME);
+		Path crawldb = new Path(segment, CRAWLDB_DIR_NAME);
 		
-		FileSystem fs = ffetch.getFileSystem(new Configuration());
-		fs.rename(ffetch, new Path(segment, CrawlDatum.FETCH_DIR_NAME));
-		fs.rename(fparse, new Path(segment, CrawlDatum.PARSE_DIR_NAME));
-		fs.rename(linkdb, new Path(options.getResultPath(), LINKDB_DIR_NAME));
-		fs.close();
+		if (options.isAppend()) {
+			log.info("Crawldb and linkdb of the new pages left in " + segment
+					+ ", to be merged into the earlier ones with nutch mergedb and mergelinkdb");
+		} else {
+			FileSystem fs = linkdb.getFileSystem(new Configuration());
+			fs.rename(linkdb, new Path(options.getResultPath(), LINKDB_DIR_NAME));
+			fs.rename(crawldb, new Path(options.getResultPath(), CRAWLDB_DIR_NAME));
+			fs.close();
+		}
 		
 		close();
 	}
 	
 	private void close() throws IOException {
 		log.info("Closing nutch data generator...");
+		info.addRun(options, options.getNumPages(), 0, options.getNumMaps());
+		info.write(options.getResultPath());
 		Utils.checkHdfsPath(options.getWorkPath());
 	}
 	
 	public static final String getLinkDbName() {
 		return LINKDB_DIR_NAME;
 	}
+
+	public static final String getCrawlDbName() {
+		return CRAWLDB_DIR_NAME;
+	}
+
+	public static final long getFetchTime(JobConf job) {
+		return job.getLong(NUTCH_FETCH_TIME_PARAM_NAME, System.currentTimeMillis());
+	}
 }
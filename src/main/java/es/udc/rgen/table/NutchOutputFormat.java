@@ -4,9 +4,13 @@ import java.io.IOException;
 
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.SequenceFile.CompressionType;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
 import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.InvalidJobConfException;
 import org.apache.hadoop.mapred.JobConf;
@@ -15,16 +19,32 @@ import org.apache.hadoop.mapred.RecordWriter;
 import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.mapred.SequenceFileOutputFormat;
 import org.apache.hadoop.util.Progressable;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.nutch.crawl.CrawlDatum;
 import org.apache.nutch.crawl.Inlinks;
+import org.apache.nutch.metadata.Metadata;
+import org.apache.nutch.metadata.Nutch;
+import org.apache.nutch.parse.Outlink;
 import org.apache.nutch.parse.ParseData;
 import org.apache.nutch.parse.ParseText;
+import org.apache.nutch.util.StringUtil;
 
 
 /* Parse content in a segment. */
 public class NutchOutputFormat implements OutputFormat<Text, NutchParse> {
 //	private static final Log log = LogFactory.getLog(NutchOutputFormat.class);
 
+	// each output gets its own writer thread when the queue size is positive
+	public static final String WRITER_QUEUE_SIZE = "nutch.segment.writer.queue";
+	public static final String TEXT_COMPRESSION_TYPE = "nutch.parse.text.compression.type";
+	public static final String TEXT_COMPRESSION_CODEC = "nutch.parse.text.compression.codec";
+
+	private static final int DEFAULT_WRITER_QUEUE_SIZE = 1000;
+
+	// same key and default as the nutch crawl db
+	public static final String FETCH_INTERVAL = "db.fetch.interval.default";
+	private static final int DEFAULT_FETCH_INTERVAL = 2592000;
+
 	public void checkOutputSpecs(FileSystem fs, JobConf job) throws IOException {
 		Path out = FileOutputFormat.getOutputPath(job);
 		if ((out == null) && (job.getNumReduceTasks() != 0)) {
@@ -45,106 +65,136 @@ public class NutchOutputFormat implements OutputFormat<Text, NutchParse> {
 			String name, Progressable progress) throws IOException {
 
 		final CompressionType compType = SequenceFileOutputFormat.getOutputCompressionType(job);
-		Path out = FileOutputFormat.getOutputPath(job);
+		final CompressionCodec codec = ReflectionUtils.newInstance(
+				FileOutputFormat.getOutputCompressorClass(job, DefaultCodec.class), job);
+		// the task attempt directory, promoted into the segment when the task commits
+		Path out = FileOutputFormat.getWorkOutputPath(job);
+		if (null == out) {
+			out = FileOutputFormat.getOutputPath(job);
+		}
 		
 		Path text = new Path(new Path(out, ParseText.DIR_NAME), name);
 		Path data = new Path(new Path(out, ParseData.DIR_NAME), name);
 		Path linkdb = new Path(new Path(new Path(out, NutchData.getLinkDbName()), "current"), name);
-//		Path crawl = new Path(new Path(out, CrawlDatum.PARSE_DIR_NAME), name);
-//		Path crawldb = new Path(out.getParent(), "/crawldb/current");
-//		Path crawlgenerate = new Path(new Path(out, CrawlDatum.GENERATE_DIR_NAME), name);
+		Path crawl = new Path(new Path(out, CrawlDatum.PARSE_DIR_NAME), name);
+		Path fetch = new Path(new Path(out, CrawlDatum.FETCH_DIR_NAME), name);
+		Path generate = new Path(new Path(out, CrawlDatum.GENERATE_DIR_NAME), name);
+		Path crawldb = new Path(new Path(new Path(out, NutchData.getCrawlDbName()), "current"), name);
 
-//		final String[] parseMDtoCrawlDB = job.get("db.parsemeta.to.crawldb","").split(" *, *");
+		final CompressionType textCompType = job.getEnum(TEXT_COMPRESSION_TYPE, CompressionType.RECORD);
+		final CompressionCodec textCodec = ReflectionUtils.newInstance(
+				job.getClass(TEXT_COMPRESSION_CODEC, DefaultCodec.class, CompressionCodec.class), job);
+		final int queueSize = job.getInt(WRITER_QUEUE_SIZE, DEFAULT_WRITER_QUEUE_SIZE);
 
-		final MapFile.Writer textOut =
+		final MapFileAppender textOut = new MapFileAppender(name + "-" + ParseText.DIR_NAME,
 				new MapFile.Writer(job, fs, text.toString(), Text.class, ParseText.class,
-						CompressionType.RECORD, progress);
+						textCompType, textCodec, progress), queueSize);
 
-		final MapFile.Writer dataOut =
+		final MapFileAppender dataOut = new MapFileAppender(name + "-" + ParseData.DIR_NAME,
 				new MapFile.Writer(job, fs, data.toString(), Text.class, ParseData.class,
-						compType, progress);
+						compType, codec, progress), queueSize);
 
-		final MapFile.Writer linkdbOut =
+		final MapFileAppender linkdbOut = new MapFileAppender(name + "-" + NutchData.getLinkDbName(),
 				new MapFile.Writer(job, fs, linkdb.toString(), Text.class, Inlinks.class,
-						compType, progress);
-/*
+						compType, codec, progress), queueSize);
 		final SequenceFile.Writer crawlOut =
 				SequenceFile.createWriter(fs, job, crawl, Text.class, CrawlDatum.class,
-						compType, progress);
+						compType, codec, progress, new SequenceFile.Metadata());
 
-		final SequenceFile.Writer crawlDbOut =
-				SequenceFile.createWriter(fs, job, crawldb, Text.class, CrawlDatum.class,
-						compType, progress);
+		// nutch opens crawl_fetch and the crawldb as map files, the urls come sorted
+		final MapFileAppender fetchOut = new MapFileAppender(name + "-" + CrawlDatum.FETCH_DIR_NAME,
+				new MapFile.Writer(job, fs, fetch.toString(), Text.class, CrawlDatum.class,
+						compType, codec, progress), queueSize);
 
 		final SequenceFile.Writer generateOut =
-				SequenceFile.createWriter(fs, job, crawlgenerate, Text.class, CrawlDatum.class,
-						compType, progress);
-*/		
+				SequenceFile.createWriter(fs, job, generate, Text.class, CrawlDatum.class,
+						compType, codec, progress, new SequenceFile.Metadata());
+
+		final MapFileAppender crawlDbOut = new MapFileAppender(name + "-" + NutchData.getCrawlDbName(),
+				new MapFile.Writer(job, fs, crawldb.toString(), Text.class, CrawlDatum.class,
+						compType, codec, progress), queueSize);
+
+		final int interval = job.getInt(FETCH_INTERVAL, DEFAULT_FETCH_INTERVAL);
+		final long defaultFetchTime = NutchData.getFetchTime(job);
+
 		return new RecordWriter<Text, NutchParse>() {
 
 			public void write(Text key, NutchParse parse)
 					throws IOException {
 
-//				CrawlDatum crawldatum = new CrawlDatum();
-/*				
-				crawldatum.setStatus(CrawlDatum.STATUS_FETCH_SUCCESS);
-				crawlOut.append(parse.url, crawldatum);
-				
-				crawldatum.setStatus(CrawlDatum.STATUS_FETCH_SUCCESS);
-				generateOut.append(parse.url, crawldatum);
+				// the key is reused by the caller, the writer threads need their own copy
+				Text url = new Text(key);
 
-				crawldatum.setStatus(CrawlDatum.STATUS_FETCH_SUCCESS);
-				crawlDbOut.append(parse.url, crawldatum);
-*/				
-				if (null != parse.text) {
-					textOut.append(key, parse.text);
+				if (null == parse.data) {
+					if (null != parse.inlinks && parse.inlinks.size() > 0) {
+						// page not crawled by this job, with links pointing to it
+						linkdbOut.append(url, parse.inlinks);
+					}
+					if (parse.linked) {
+						// page outside the crawl, only known through the links pointing to it
+						crawlDbOut.append(url, new CrawlDatum(CrawlDatum.STATUS_LINKED, interval));
+					}
+					return;
 				}
-				
-				if (null != parse.data) {
-					dataOut.append(key, parse.data);
+
+				if (null != parse.text) {
+					textOut.append(url, parse.text);
 				}
+				dataOut.append(url, parse.data);
 				
 				if (null != parse.inlinks) {
-					linkdbOut.append(key, parse.inlinks);
+					linkdbOut.append(url, parse.inlinks);
 				}
-				
-				// TODO: remember to append real page text
-
-				/**
-				 *  TODO: remember to append correct crawldatum
-					1.	CrawlDatum d = new CrawlDatum(CrawlDatum.STATUS_SIGNATURE, 0);
-						String sig = parseData.getContentMeta().get(Nutch.SIGNATURE_KEY);
-					2.	parseMDCrawlDatum = new CrawlDatum(CrawlDatum.STATUS_PARSE_META, 0);
-						if (parseMDCrawlDatum != null) crawlOut.append(key, parseMDCrawlDatum);
-					3.	newDatum.setStatus(CrawlDatum.STATUS_LINKED);
-						newDatum.getMetaData().put(Nutch.WRITABLE_REPR_URL_KEY,	new Text(reprUrl));
-					4.	CrawlDatum target = new CrawlDatum(CrawlDatum.STATUS_LINKED, interval);
-						for (Entry<Text, CrawlDatum> target : targets) {
-							crawlOut.append(target.getKey(), target.getValue());
-						}
-					5.	adjust, STATUS_LINKED
-					6.	
-					CrawlDatum datum = new CrawlDatum();
-					datum.setStatus(CrawlDatum.STATUS_FETCH_SUCCESS);
-					String timeString = parse.getData().getContentMeta().get(Nutch.FETCH_TIME_KEY);
-					try {
-						datum.setFetchTime(Long.parseLong(timeString));
-					} catch (Exception e) {
-						LOG.warn("Can't read fetch time for: " + key);
-						datum.setFetchTime(System.currentTimeMillis());
+
+				Metadata contentMeta = parse.data.getContentMeta();
+				long fetchTime = defaultFetchTime;
+				String timeString = contentMeta.get(Nutch.FETCH_TIME_KEY);
+				if (null != timeString) {
+					fetchTime = Long.parseLong(timeString);
+				}
+				String sig = contentMeta.get(Nutch.SIGNATURE_KEY);
+				byte[] signature = (null == sig) ? null : StringUtil.fromHexString(sig);
+
+				CrawlDatum generated = new CrawlDatum(CrawlDatum.STATUS_DB_UNFETCHED, interval);
+				generated.setFetchTime(fetchTime);
+				generated.getMetaData().put(Nutch.WRITABLE_GENERATE_TIME_KEY, new LongWritable(fetchTime));
+				generateOut.append(url, generated);
+
+				CrawlDatum fetched = new CrawlDatum(CrawlDatum.STATUS_FETCH_SUCCESS, interval);
+				fetched.setFetchTime(fetchTime);
+				fetched.setSignature(signature);
+				fetchOut.append(url, fetched);
+
+				if (null != signature) {
+					CrawlDatum signed = new CrawlDatum(CrawlDatum.STATUS_SIGNATURE, 0);
+					signed.setSignature(signature);
+					crawlOut.append(url, signed);
+				}
+
+				Outlink[] outlinks = parse.data.getOutlinks();
+				if (null != outlinks) {
+					CrawlDatum target = new CrawlDatum(CrawlDatum.STATUS_LINKED, interval);
+					for (int i=0; i<outlinks.length; i++) {
+						crawlOut.append(new Text(outlinks[i].getToUrl()), target);
 					}
-					crawlOut.append(key, datum);
-				 */
+				}
+
+				// the state an updatedb over this segment would leave behind
+				CrawlDatum db = new CrawlDatum(CrawlDatum.STATUS_DB_FETCHED, interval);
+				db.setFetchTime(fetchTime + interval * 1000L);
+				db.setModifiedTime(fetchTime);
+				db.setSignature(signature);
+				crawlDbOut.append(url, db);
 			}
 
 			public void close(Reporter reporter) throws IOException {
 				textOut.close();
 				dataOut.close();
 				linkdbOut.close();
-//				crawlOut.close();
-//				crawlDbOut.close();
-//				generateOut.close();
-//				linkdbOut.close();
+				crawlOut.close();
+				fetchOut.close();
+				generateOut.close();
+				crawlDbOut.close();
 			}
 		};
 	}
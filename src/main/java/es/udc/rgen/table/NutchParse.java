@@ -15,11 +15,22 @@ public class NutchParse implements Writable {
 	public Inlinks inlinks;
 	public ParseText text;
 	public ParseData data;
+	// a page outside the crawl, to enter the crawldb as linked
+	public boolean linked;
 	
 	NutchParse(Inlinks inlinks, ParseText text, ParseData data) {
 		this.inlinks = inlinks;
 		this.text = text;
 		this.data = data;
+		this.linked = false;
+	}
+	
+	/***
+	 * A page not crawled by the job, with the links to it it got.
+	 */
+	NutchParse(Inlinks inlinks, boolean linked) {
+		this(inlinks, null, null);
+		this.linked = linked;
 	}
 	@Override
 	public void readFields(DataInput in) throws IOException {
@@ -0,0 +1,77 @@
+package es.udc.rgen.table;
+
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/***
+ * Content signature of a generated page, stored in the parse data under
+ * Nutch.SIGNATURE_KEY and in the crawl datums of the segment.
+ *
+ * Implementations must be thread safe and should not allocate per call:
+ * digest writes into a buffer given by the caller, and toHex encodes
+ * through a per thread scratch buffer, so the only allocation per page is
+ * the resulting String.
+ */
+public abstract class PageSignature {
+
+	public static final String SIGNATURE_CLASS = "nutch.page.signature.class";
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private static final ThreadLocal<byte[]> digestBuffer = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[256];
+		}
+	};
+
+	private static final ThreadLocal<char[]> hexBuffer = new ThreadLocal<char[]>() {
+		@Override
+		protected char[] initialValue() {
+			return new char[512];
+		}
+	};
+
+	/***
+	 * @return number of bytes written by digest
+	 */
+	public abstract int length();
+
+	/***
+	 * Digest length bytes of data starting at offset into out, which must
+	 * hold at least length() bytes.
+	 */
+	public abstract void digest(byte[] data, int offset, int length, byte[] out);
+
+	public byte[] calculate(byte[] data, int offset, int length) {
+		byte[] out = new byte[length()];
+		digest(data, offset, length, out);
+		return out;
+	}
+
+	/***
+	 * Lower case hex form of the digest, as written by StringUtil.toHexString.
+	 */
+	public String calculateHex(byte[] data, int offset, int length) {
+		byte[] out = digestBuffer.get();
+		digest(data, offset, length, out);
+		return toHex(out, length());
+	}
+
+	public static String toHex(byte[] bytes, int length) {
+		char[] chars = hexBuffer.get();
+		for (int i=0, j=0; i<length; i++) {
+			chars[j++] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+			chars[j++] = HEX_DIGITS[bytes[i] & 0x0f];
+		}
+		return new String(chars, 0, 2 * length);
+	}
+
+	/***
+	 * The signature configured for the job, MD5 (as nutch) by default.
+	 */
+	public static PageSignature get(JobConf job) {
+		return ReflectionUtils.newInstance(job.getClass(SIGNATURE_CLASS,
+				MD5PageSignature.class, PageSignature.class), job);
+	}
+}
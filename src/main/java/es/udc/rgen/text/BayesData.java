@@ -9,7 +9,6 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapred.FileInputFormat;
 import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
@@ -18,12 +17,16 @@ import org.apache.hadoop.mapred.Mapper;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.mapred.SequenceFileOutputFormat;
-import org.apache.hadoop.mapred.lib.NLineInputFormat;
 
 import es.udc.rgen.DataOptions;
-import es.udc.rgen.misc.Dummy;
+import es.udc.rgen.misc.Counters;
+import es.udc.rgen.misc.GenStats;
 import es.udc.rgen.misc.HtmlCore;
 import es.udc.rgen.misc.RawData;
+import es.udc.rgen.misc.RunReport;
+import es.udc.rgen.misc.SlotRangeInputFormat;
+import es.udc.rgen.misc.SlotRangeSplit;
+import es.udc.rgen.misc.SplitMix64;
 import es.udc.rgen.misc.Utils;
 
 public class BayesData {
@@ -31,7 +34,6 @@ public class BayesData {
 	private static final Log log = LogFactory.getLog(BayesData.class.getName());
 	
 	private DataOptions options;
-	private Dummy dummy;
 	private int cgroups;
 	
 	public BayesData(DataOptions options) {
@@ -52,22 +54,27 @@ public class BayesData {
 	}
 
 	private static class CreateBayesPages extends MapReduceBase implements
-	Mapper<LongWritable, Text, Text, Text> {
+	Mapper<LongWritable, SlotRangeSplit, Text, Text> {
 
 		private static final Log log = LogFactory.getLog(CreateBayesPages.class.getName());
 		
-		private long pages, slotpages;
+		private long slotpages;
 		private int groups;
 		private HtmlCore generator;
 		private Random rand;
+		private boolean seeded;
+		private long seed;
+		private GenStats stats;
 
 		public void configure(JobConf job) {
 			try {
-				pages = job.getLong("pages", 0);
 				slotpages = job.getLong("slotpages", 0);
 				groups = job.getInt("groups", 0);
+				seeded = DataOptions.isSeeded(job);
+				seed = SplitMix64.mix(job.getLong(DataOptions.SEED, 0), -1);
 				
 				generator = new HtmlCore(job);
+				stats = new GenStats(generator);
 			} catch (IOException e) {
 				// TODO Auto-generated catch block
 				e.printStackTrace();
@@ -75,27 +82,38 @@ public class BayesData {
 		}
 
 		@Override
-		public void map(LongWritable key, Text value,
+		public void map(LongWritable key, SlotRangeSplit value,
 				OutputCollector<Text, Text> output, Reporter reporter)
 				throws IOException {
 
-			int slotId = Integer.parseInt(value.toString().trim());
-			long[] range = HtmlCore.getPageRange(slotId, pages, slotpages);
+			int slotId = value.getSlot();
+			long[] range = value.getRange();
 			generator.fireRandom(slotId);
 			rand = new Random(slotId * 1000 + 101);
 			
 			Text k = new Text();
+			Text v = new Text();
 			for (long i=range[0]; i<range[1]; i++) {
+				long t = stats.start();
+				if (seeded) {
+					generator.fireRecord(i);
+					rand.setSeed(SplitMix64.mix(seed, i));
+				}
 				String classname = "/class" + rand.nextInt(groups);
+				String words = generator.genBayesWords();
+				t = stats.lap(Counters.GENERATE_NANOS, t);
 				k.set(classname);
-				value.set(generator.genBayesWords());
-				output.collect(k, value);
-				reporter.incrCounter(es.udc.rgen.misc.Counters.BYTES_DATA_GENERATED,
-					k.getLength()+value.getLength());
+				v.set(words);
+				t = stats.lap(Counters.ENCODE_NANOS, t);
+				output.collect(k, v);
+				t = stats.lap(Counters.WRITE_NANOS, t);
+				stats.add(Counters.RANDOM_DRAWS, 1);
+				stats.record(k.getLength()+v.getLength());
 				if (0==(i % 10000)) {
 					log.info("still running: " + (i - range[0]) + " of " + slotpages);
 				}
 			}
+			stats.flush(reporter);
 		}
 	}
 	
@@ -103,6 +121,8 @@ public class BayesData {
 		job.setLong("pages", options.getNumPages());
 		job.setLong("slotpages", options.getNumSlotPages());
 		job.setInt("groups", cgroups);
+		SlotRangeInputFormat.setSlots(job, options.getNumMaps(), options.getNumPages());
+		options.shareSeed(job);
 		
 		Utils.shareWordZipfCore(options, job);
 	}
@@ -123,8 +143,7 @@ public class BayesData {
 		
 		setBayesOptions(job);
 		
-		FileInputFormat.setInputPaths(job, dummy.getPath());
-		job.setInputFormat(NLineInputFormat.class);
+		job.setInputFormat(SlotRangeInputFormat.class);
 
 		job.setJarByClass(CreateBayesPages.class);
 		job.setMapperClass(CreateBayesPages.class);
@@ -136,11 +155,12 @@ public class BayesData {
 		job.setMapOutputValueClass(Text.class);
 		job.setOutputKeyClass(Text.class);
 		job.setOutputValueClass(Text.class);
+		Utils.setFinalOutput(options, job);
 
 		log.info("Running Job: " +jobname);
-		log.info("Pages file " + dummy.getPath() + " as input");
+		log.info(options.getNumMaps() + " slots as input");
 		log.info("Rankings file " + fout + " as output");
-		JobClient.runJob(job);
+		RunReport.add(JobClient.runJob(job));
 		log.info("Finished Running Job: " + jobname);
 	}
 	
@@ -149,8 +169,6 @@ public class BayesData {
 		Utils.checkHdfsPath(options.getResultPath(), true);
 		Utils.checkHdfsPath(options.getWorkPath(), true);
 
-		dummy = new Dummy(options.getWorkPath(), options.getNumMaps());
-
 		int words = RawData.putDictToHdfs(new Path(options.getWorkPath(), HtmlCore.getDictName()), options.getNumWords());
 		options.setNumWords(words);
 		
@@ -0,0 +1,245 @@
+package es.udc.rgen.text;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/***
+ * Binary form of an LDA model (final.beta plus the .voca file), which tasks
+ * memory map instead of parsing text. Layout, big endian:
+ *
+ * int magic "LDAM", int version, int topics, int terms, int value bytes,
+ * topics x terms floats with the term probabilities of each topic
+ * (exponentiated and normalised), terms + 1 int offsets into the vocabulary
+ * blob, and the blob with the UTF-8 terms. Models written with doubles, a
+ * value size of 8, are read as well.
+ *
+ * The generator converts the text model into its work path, unless the
+ * model directory already holds a final.bin made with main.
+ */
+public class LDAModel {
+
+	private static final Log log = LogFactory.getLog(LDAModel.class.getName());
+
+	public static final String BINARY_FILE = "final.bin";
+
+	private static final int MAGIC = 0x4c44414d;
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 5 * 4;
+	private static final int VALUE_BYTES = 4;
+	private static final int DOUBLE_VALUE_BYTES = 8;
+
+	private final int topics;
+	private final int terms;
+	private final FloatBuffer beta;
+	private final DoubleBuffer betaDoubles;
+	private final String[] voca;
+
+	private LDAModel(int topics, int terms, FloatBuffer beta, DoubleBuffer betaDoubles,
+			String[] voca) {
+		this.topics = topics;
+		this.terms = terms;
+		this.beta = beta;
+		this.betaDoubles = betaDoubles;
+		this.voca = voca;
+	}
+
+	public int getTopics() {
+		return topics;
+	}
+
+	public int getTerms() {
+		return terms;
+	}
+
+	/***
+	 * Copy the term probabilities of topic into out.
+	 */
+	public void getTopic(int topic, double[] out) {
+		if (null != betaDoubles) {
+			DoubleBuffer view = betaDoubles.duplicate();
+			view.position(topic * terms);
+			view.get(out, 0, terms);
+			return;
+		}
+		FloatBuffer view = beta.duplicate();
+		view.position(topic * terms);
+		for (int i=0; i<terms; i++) {
+			out[i] = view.get();
+		}
+	}
+
+	public String[] getVoca() {
+		return voca;
+	}
+
+	/***
+	 * Memory map a binary model in the local file system.
+	 */
+	public static LDAModel map(File file) throws IOException {
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("LDA model " + file + " is too large to map");
+			}
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				throw new IOException(file + " is not a binary LDA model");
+			}
+			int topics = buffer.getInt();
+			int terms = buffer.getInt();
+			int valueBytes = buffer.getInt();
+			if (valueBytes != VALUE_BYTES && valueBytes != DOUBLE_VALUE_BYTES) {
+				throw new IOException("Unsupported value size in " + file);
+			}
+
+			int betaBytes = topics * terms * valueBytes;
+			ByteBuffer betaBuffer = buffer.slice();
+			betaBuffer.limit(betaBytes);
+			FloatBuffer beta = null;
+			DoubleBuffer betaDoubles = null;
+			if (valueBytes == VALUE_BYTES) {
+				beta = betaBuffer.asFloatBuffer();
+			} else {
+				betaDoubles = betaBuffer.asDoubleBuffer();
+			}
+
+			buffer.position(HEADER_BYTES + betaBytes);
+			int[] offsets = new int[terms + 1];
+			for (int i=0; i<=terms; i++) {
+				offsets[i] = buffer.getInt();
+			}
+			byte[] blob = new byte[offsets[terms]];
+			buffer.get(blob);
+			String[] voca = new String[terms];
+			for (int i=0; i<terms; i++) {
+				voca[i] = new String(blob, offsets[i], offsets[i+1] - offsets[i], "UTF-8");
+			}
+			return new LDAModel(topics, terms, beta, betaDoubles, voca);
+		} finally {
+			// the mapping stays valid after closing the file
+			raf.close();
+		}
+	}
+
+	/***
+	 * Convert a text model, whose beta file holds a line of log probabilities
+	 * per topic and whose voca file holds a term per line, into out.
+	 */
+	public static void convert(FileSystem fs, Path betaFile, Path vocaFile,
+			int topics, int terms, Path out) throws IOException {
+
+		log.info("Converting LDA model " + betaFile + " into " + out);
+
+		List<byte[]> voca = new ArrayList<byte[]>(terms);
+		BufferedReader invoca = new BufferedReader(new InputStreamReader(fs.open(vocaFile), "UTF-8"));
+		try {
+			for (int i=0; i<terms; i++) {
+				String term = invoca.readLine();
+				if (null == term) {
+					throw new IOException(vocaFile + " has less than " + terms + " terms");
+				}
+				voca.add(term.trim().getBytes("UTF-8"));
+			}
+		} finally {
+			invoca.close();
+		}
+
+		DataOutputStream dout = fs.create(out, true);
+		BufferedReader inbeta = new BufferedReader(new InputStreamReader(fs.open(betaFile), "UTF-8"));
+		try {
+			dout.writeInt(MAGIC);
+			dout.writeInt(VERSION);
+			dout.writeInt(topics);
+			dout.writeInt(terms);
+			dout.writeInt(VALUE_BYTES);
+
+			double[] beta = new double[terms];
+			for (int j=0; j<topics; j++) {
+				String line = inbeta.readLine();
+				if (null == line) {
+					throw new IOException(betaFile + " has less than " + topics + " topics");
+				}
+				String[] beta_topic = line.trim().split("\\s+");
+				if (beta_topic.length < terms) {
+					throw new IOException("Topic " + j + " of " + betaFile + " has less than " + terms + " terms");
+				}
+				double max = Double.NEGATIVE_INFINITY;
+				for (int i=0; i<terms; i++) {
+					beta[i] = Double.parseDouble(beta_topic[i]);
+					max = Math.max(max, beta[i]);
+				}
+				// scale by the largest probability so that exp can not underflow
+				double sum = 0;
+				for (int i=0; i<terms; i++) {
+					beta[i] = Math.exp(beta[i] - max);
+					sum += beta[i];
+				}
+				for (int i=0; i<terms; i++) {
+					dout.writeFloat((float) (beta[i] / sum));
+				}
+			}
+
+			int offset = 0;
+			dout.writeInt(offset);
+			for (byte[] term : voca) {
+				offset += term.length;
+				dout.writeInt(offset);
+			}
+			for (byte[] term : voca) {
+				dout.write(term);
+			}
+		} finally {
+			inbeta.close();
+			dout.close();
+		}
+	}
+
+	/***
+	 * Convert the model in a directory, as given to the generator with -i,
+	 * into its final.bin, so that later runs do not have to.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length != 1) {
+			System.err.println("Usage: LDAModel <input_model>");
+			System.exit(1);
+		}
+		Path input = new Path(args[0]);
+		FileSystem fs = input.getFileSystem(new Configuration());
+
+		int topics = 0, terms = 0;
+		BufferedReader inother = new BufferedReader(new InputStreamReader(
+				fs.open(new Path(input, LDATextGenerator.ALPHAFILE)), "UTF-8"));
+		try {
+			String[] num_topics_s = inother.readLine().trim().split(" ");
+			topics = Integer.parseInt(num_topics_s[num_topics_s.length-1]);
+			String[] num_terms_s = inother.readLine().trim().split(" ");
+			terms = Integer.parseInt(num_terms_s[num_terms_s.length-1]);
+		} finally {
+			inother.close();
+		}
+
+		convert(fs, new Path(input, LDATextGenerator.BETAFILE),
+				new Path(input, input.getName() + LDATextGenerator.VOCAFILE),
+				topics, terms, new Path(input, BINARY_FILE));
+	}
+}
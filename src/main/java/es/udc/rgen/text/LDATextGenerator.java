@@ -1,11 +1,13 @@
 package es.udc.rgen.text;
 
+import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.List;
-import java.util.Random;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -13,16 +15,30 @@ import org.apache.commons.math3.distribution.GammaDistribution;
 import org.apache.commons.math3.distribution.PoissonDistribution;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.filecache.DistributedCache;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.*;
-import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.mahout.math.SequentialAccessSparseVector;
+import org.apache.mahout.math.Vector;
+import org.apache.mahout.math.VectorWritable;
 
 import es.udc.rgen.*;
+import es.udc.rgen.misc.Counters;
+import es.udc.rgen.misc.GenStats;
+import es.udc.rgen.misc.RunReport;
+import es.udc.rgen.misc.SlotRangeInputFormat;
+import es.udc.rgen.misc.SlotRangeSplit;
+import es.udc.rgen.misc.SplitMix64;
 import es.udc.rgen.misc.Utils;
 
 public class LDATextGenerator extends Configured {
@@ -31,20 +47,31 @@ public class LDATextGenerator extends Configured {
 	
 	public static final String LINES = "mapreduce.ldatext.lines";
 	public static final String WORDS_PER_LINE = "mapreduce.ldatext.wordsline";
-	public static final String BYTES_PER_MAP = "mapreduce.ldatext.bytesmap";
-	public static final String CONTROL_BYTES = "mapreduce.ldatext.controlbytes";
+	public static final String TOTAL_BYTES = "mapreduce.ldatext.totalbytes";
 	public static final String NUM_TOPICS = "mapreduce.ldatext.numtopics";
 	public static final String NUM_TERMS = "mapreduce.ldatext.numterms";
 	public static final String ALPHA = "mapreduce.ldatext.alpha";
 	public static final String DELIMETER = "mapreduce.output.textoutputformat.separator";
 	public static final String NUM_MAPS = "mapreduce.ldatext.nummaps";
+	public static final String SEED = "mapreduce.ldatext.seed";
+	public static final String VECTORS = "mapreduce.ldatext.vectors";
+	public static final String TOP_TERMS = "mapreduce.ldatext.topterms";
 	
 	public static final String BETA = "mapreduce.ldatext.beta";
 	public static final String VOCA = "mapreduce.ldatext.voca";
 	
-	private static final String ALPHAFILE = "final.other";
-	private static final String BETAFILE = "final.beta";
-	private static final String VOCAFILE = ".voca";
+	private static final String MODEL_LINK = "ldamodel";
+	
+	/* ids of each slot when generating by size */
+	static final long DOC_BLOCK = 1L << 40;
+	
+	/* layout of mahout's seq2sparse output, read by its lda (cvb) driver */
+	public static final String TF_VECTORS_DIR = "tf-vectors";
+	public static final String DICTIONARY_FILE = "dictionary.file-0";
+	
+	static final String ALPHAFILE = "final.other";
+	static final String BETAFILE = "final.beta";
+	static final String VOCAFILE = ".voca";
 	
 	private DataOptions options;
 	private Configuration conf;
@@ -56,8 +83,8 @@ public class LDATextGenerator extends Configured {
 	
 	private int num_topics = 0, num_terms = 0;
 	private Double alpha = 0.0;
-
-	private static final Random random_seed = new Random(System.currentTimeMillis());
+	private boolean vectors = false;
+	private int top_terms = 0;
 
 	public LDATextGenerator (Configuration conf, DataOptions options) throws IOException {
 		this.conf=conf;
@@ -73,6 +100,10 @@ public class LDATextGenerator extends Configured {
 				lines = Long.parseLong(args[++i]);
 			} else if ("-wl".equals(args[i])) {
 				words_per_line = Integer.parseInt(args[++i]);
+			} else if ("-vectors".equals(args[i])) {
+				vectors = true;
+			} else if ("-topk".equals(args[i])) {
+				top_terms = Integer.parseInt(args[++i]);
 			} else if ("-i".equals(args[i])) {
 				String input_path_string = args[++i];
 				input_path = new Path(input_path_string);
@@ -99,8 +130,6 @@ public class LDATextGenerator extends Configured {
 		
 		Utils.checkHdfsPath(options.getResultPath(), true);
 		//Utils.checkHdfsPath(options.getWorkPath(), true);
-
-		//dummy = new Dummy(options.getWorkPath(), options.getNumMaps());
 	}
 	
 	@SuppressWarnings("deprecation")
@@ -109,12 +138,17 @@ public class LDATextGenerator extends Configured {
 		job.setLong(LINES, lines);
 		job.setInt(WORDS_PER_LINE, words_per_line);
 		job.setInt(NUM_MAPS, options.getNumMaps());
-		job.setLong(BYTES_PER_MAP, options.getNumSlotPages());
-		if (options.getNumPages() <= 0) {
-			job.setBoolean(CONTROL_BYTES, false);
-		} else {
-			job.setBoolean(CONTROL_BYTES, true);
+		job.setLong(TOTAL_BYTES, Math.max(options.getNumPages(), 0));
+		if (Long.MAX_VALUE == lines && options.getNumPages() <= 0) {
+			throw new IOException("LDA-text needs the number of lines (-l) or bytes (-p) to generate");
 		}
+		long slot_docs = (Long.MAX_VALUE == lines) ? DOC_BLOCK : lines;
+		SlotRangeInputFormat.setSlots(job, options.getNumMaps(), slot_docs * options.getNumMaps());
+		long seed = options.hasSeed() ? options.getSeed() : System.currentTimeMillis();
+		log.info("Random seed " + seed + ", pass -seed " + seed + " to repeat this run");
+		job.setLong(SEED, seed);
+		job.setBoolean(VECTORS, vectors);
+		job.setInt(TOP_TERMS, top_terms);
 		
 		FileSystem fs = FileSystem.get(job);
 		FSDataInputStream inalpha = fs.open(alphafile);
@@ -137,174 +171,181 @@ public class LDATextGenerator extends Configured {
 		
 		job.setStrings(VOCA,vocafile.toString());
 		
+		// ship the model in binary form, for the tasks to map it
+		Path model = new Path(input_path, LDAModel.BINARY_FILE);
+		// not Utils.existsPath, which closes the cached fs that convert writes through
+		if (!fs.exists(model)) {
+			model = new Path(options.getWorkPath(), LDAModel.BINARY_FILE);
+			LDAModel.convert(fs, betafile, vocafile, num_topics, num_terms, model);
+		}
+		DistributedCache.createSymlink(job);
+		DistributedCache.addCacheFile(new URI(model.toString() + "#" + MODEL_LINK), job);
+		
 		fs.close();
 	}
 	
-	static class LDAInputFormat extends InputFormat<Text, Text> {
-
-	    /** 
-	     * Generate the requested number of file splits, with the filename
-	     * set to the filename of the output file.
-	     */
-	    public List<InputSplit> getSplits(JobContext job) throws IOException {
-	      List<InputSplit> result = new ArrayList<InputSplit>();
-	      Path outDir = FileOutputFormat.getOutputPath(job);
-	      int numSplits = job.getConfiguration().getInt(NUM_MAPS, 1);
-	      for(int i=0; i < numSplits; ++i) {
-	        result.add(new FileSplit(new Path(outDir, "dummy-split-" + i), 0, 1, 
-	                                  (String[])null));
-	      }
-	      return result;
-	    }
+	/***
+	 * Writes each document as a line of words, or with -vectors as the
+	 * sparse vector of its term counts, keyed by a document name.
+	 *
+	 * Each map writes the documents of its slot range: with -l, lines
+	 * documents with ids following one another across maps; with -p, those
+	 * needed to reach its exact share of the total size, from a block of
+	 * DOC_BLOCK ids of its own. The random stream of a document is seeded
+	 * from the run seed and its id, so a document is the same whichever map
+	 * writes it. The last document is kept only if it leaves the map closer
+	 * to its byte target than dropping it would.
+	 */
+	static class DummyToTextMapper extends Mapper<LongWritable, SlotRangeSplit, Text, Writable> {
 
-	    /**
-	     * Return a single record (filename, "") where the filename is taken from
-	     * the file split.
-	     */
-	    static class RandomRecordReader extends RecordReader<Text, Text> {
-	      Path name;
-	      Text key = null;
-	      Text value = new Text();
-	      public RandomRecordReader(Path p) {
-	        name = p;
-	      }
-	      
-	      public void initialize(InputSplit split,
-	                             TaskAttemptContext context)
-	      throws IOException, InterruptedException {
-	    	  
-	      }
-	      
-	      public boolean nextKeyValue() {
-	        if (name != null) {
-	          key = new Text();
-	          key.set(name.getName());
-	          name = null;
-	          return true;
-	        }
-	        return false;
-	      }
-	      
-	      public Text getCurrentKey() {
-	        return key;
-	      }
-	      
-	      public Text getCurrentValue() {
-	        return value;
-	      }
-	      
-	      public void close() {}
-
-	      public float getProgress() {
-	        return 0.0f;
-	      }
-	    }
-
-	    public RecordReader<Text, Text> createRecordReader(InputSplit split,
-	        TaskAttemptContext context) throws IOException, InterruptedException {
-	      return new RandomRecordReader(((FileSplit) split).getPath());
-	    }
-	  }
-	
-	static class DummyToTextMapper extends Mapper<Text, Text, Text, Text> {
-
-		private int words_line, topics_num, terms_num;
-		private long lines, bytes_per_map;
-		private double alpha;
-		private boolean control_bytes;
-		private String beta_path_string, voca_path_string;
-		private double[][] beta;
+		private int words_line, topics_num, terms_num, num_maps;
+		private long seed, total_bytes;
+		private boolean vectors;
+		private Multinomial[] multinomiali;
 		private String[] voca;
+		private SplitMix64 rng;
+		private GammaDistribution gamma;
+		private PoissonDistribution poisson;
 		FileSystem fs;
 		
 		public void setup(Context context) throws IOException {
 			Configuration conf = context.getConfiguration();
-			lines = conf.getLong(LINES, Long.MAX_VALUE);
 			words_line = conf.getInt(WORDS_PER_LINE, 20);
 			topics_num = conf.getInt(NUM_TOPICS, 0);
 			terms_num = conf.getInt(NUM_TERMS, 0);
-			alpha = conf.getDouble(ALPHA, 1);
-			bytes_per_map = conf.getLong(BYTES_PER_MAP, 1024*1024*1024);
-			control_bytes = conf.getBoolean(CONTROL_BYTES, false);
-			
-			beta_path_string = conf.get(BETA);
-			voca_path_string = conf.get(VOCA);
+			vectors = conf.getBoolean(VECTORS, false);
+			seed = conf.getLong(SEED, 0);
+			num_maps = conf.getInt(NUM_MAPS, 1);
+			total_bytes = conf.getLong(TOTAL_BYTES, 0);
 			
 			fs = FileSystem.get(conf);
 			
-			beta = new double[topics_num][terms_num];
-			FSDataInputStream inbeta = fs.open(new Path(beta_path_string));
-			for (int j=0; j<topics_num; j++) {
-				String[] beta_topic = inbeta.readLine().trim().split(" ");
-				for (int i=0; i<terms_num; i++) {
-					beta[j][i] = Math.exp(Double.parseDouble(beta_topic[i]));
-				}
+			// reseeded for each document, the distributions draw from it
+			rng = new SplitMix64(seed);
+			gamma = new GammaDistribution(rng, conf.getDouble(ALPHA, 1), 1,
+					GammaDistribution.DEFAULT_INVERSE_ABSOLUTE_ACCURACY);
+			poisson = new PoissonDistribution(rng, words_line,
+					PoissonDistribution.DEFAULT_EPSILON, PoissonDistribution.DEFAULT_MAX_ITERATIONS);
+			
+			// the term distribution of every topic, built once per task
+			LDAModel model = LDAModel.map(new File(MODEL_LINK));
+			if (model.getTopics() != topics_num || model.getTerms() != terms_num) {
+				throw new IOException("LDA model has " + model.getTopics() + " topics and "
+						+ model.getTerms() + " terms, expected " + topics_num + " and " + terms_num);
 			}
-			inbeta.close();
-
-			voca = new String[terms_num];
-			FSDataInputStream invoca = fs.open(new Path(voca_path_string));
-			for (int i=0; i<terms_num; i++) {
-				voca[i] = invoca.readLine().trim();
+			int top_terms = conf.getInt(TOP_TERMS, 0);
+			if (top_terms > 0 && top_terms < terms_num) {
+				// the top terms of each topic and a residual shared by all
+				multinomiali = TopKMultinomial.build(rng, model, top_terms);
+			} else {
+				multinomiali = new Multinomial[topics_num];
+				double[] beta = new double[terms_num];
+				for (int j=0; j<topics_num; j++) {
+					model.getTopic(j, beta);
+					multinomiali[j] = new Multinomial(rng, beta);
+				}
 			}
-			invoca.close();
-			
-			//log.info("------------------> BETA FILE IN " + beta_path_string);
-			//log.info("------------------> VOCA FILE IN " + voca_path_string);
+			voca = model.getVoca();
 		}
 		
-		public void map(Text key, Text value, Context context) throws IOException,InterruptedException {
+		public void map(LongWritable key, SlotRangeSplit value, Context context) throws IOException,InterruptedException {
+			
+			// the total size divided exactly between the slots, some may get none
+			boolean sized = total_bytes > 0;
+			int slot = value.getSlot() - 1;
+			long target = total_bytes / num_maps + (slot < total_bytes % num_maps ? 1 : 0);
+			long end = (sized && 0 == target) ? value.getFirst() : value.getEnd();
 			
 			int lenght, topic, word;
-			PoissonDistribution poisson;
 			Multinomial multinomial1;
-			Multinomial[] multinomiali = new Multinomial[topics_num];
-			
 			double[] theta = new double[topics_num];
-			GammaDistribution gamma = new GammaDistribution(alpha,1);
-			for(int i=0; i<topics_num; i++){
-		        theta[i]=gamma.sample();
-		    }
 			
-			boolean cont = true;
 			long bytes_written = 0;
 			StringBuffer line, key_s;
-			Text key_t, line_t;
+			Text key_t = null, line_t = null;
 			
-			poisson = new PoissonDistribution(words_line);
-			multinomial1 = new Multinomial(random_seed,theta);
-			for (int i=0; i<topics_num; i++) {
-				multinomiali[i] = new Multinomial(random_seed,beta[i]);
-			}
+			GenStats stats = new GenStats();
+			
+			// term counts of the current document, for -vectors
+			int[] counts = vectors ? new int[terms_num] : null;
+			int[] terms = vectors ? new int[terms_num] : null;
+			VectorWritable vector = new VectorWritable();
 			
-			for (long size_i=0; cont && size_i<lines ; size_i++) {
+			for (long doc=value.getFirst(); doc<end; doc++) {
+				long t = stats.start();
+				rng.setSeed(SplitMix64.mix(seed, doc));
+				for (int i=0; i<topics_num; i++) {
+					theta[i] = gamma.sample();
+				}
+				multinomial1 = new Multinomial(rng, theta);
 				lenght = poisson.sample();
 				
-				key_s = new StringBuffer("");
-				line = new StringBuffer("");
-				
-				for (int i=0; i<lenght; i++) {
-					topic = multinomial1.sample();
+				long bytes;
+				if (vectors) {
+					int distinct = 0;
+					for (int i=0; i<lenght; i++) {
+						topic = multinomial1.sample();
+						word = multinomiali[topic].sample();
+						if (0 == counts[word]++) {
+							terms[distinct++] = word;
+						}
+					}
 					
-					word = multinomiali[topic].sample();
+					stats.add(Counters.RANDOM_DRAWS, topics_num + 1 + 2 * lenght);
+					t = stats.lap(Counters.GENERATE_NANOS, t);
 					
-					if (i<lenght/2) {
-						key_s.append(voca[word]).append(" ");
-					} else {
-						line.append(voca[word]).append(" ");
+					// sequential access vectors take ordered appends cheaply
+					Arrays.sort(terms, 0, distinct);
+					Vector tf = new SequentialAccessSparseVector(terms_num, distinct);
+					for (int i=0; i<distinct; i++) {
+						tf.setQuick(terms[i], counts[terms[i]]);
+						counts[terms[i]] = 0;
 					}
+					vector.set(tf);
+					key_t = new Text("/" + doc);
+					t = stats.lap(Counters.ENCODE_NANOS, t);
+					// approximate serialized size: an index and a double per term
+					bytes = key_t.getLength() + 12L * distinct;
+				} else {
+					key_s = new StringBuffer("");
+					line = new StringBuffer("");
+					
+					for (int i=0; i<lenght; i++) {
+						topic = multinomial1.sample();
+						
+						word = multinomiali[topic].sample();
+						
+						if (i<lenght/2) {
+							key_s.append(voca[word]).append(" ");
+						} else {
+							line.append(voca[word]).append(" ");
+						}
+					}
+					
+					stats.add(Counters.RANDOM_DRAWS, topics_num + 1 + 2 * lenght);
+					t = stats.lap(Counters.GENERATE_NANOS, t);
+					
+					key_t = new Text(key_s.toString());
+					line_t = new Text(line.toString());
+					t = stats.lap(Counters.ENCODE_NANOS, t);
+					// the separator and the newline are written too
+					bytes = key_t.getLength() + line_t.getLength() + 2;
 				}
 				
-				key_t = new Text(key_s.toString());
-				line_t = new Text(line.toString());
+				if (sized && bytes_written + bytes - target > target - bytes_written) {
+					break;
+				}
 				
-				bytes_written += key_t.getLength() + line_t.getLength();
-				context.write(key_t, line_t);
+				context.write(key_t, vectors ? vector : line_t);
+				t = stats.lap(Counters.WRITE_NANOS, t);
+				bytes_written += bytes;
+				stats.record(bytes);
 				
-				if (bytes_written >= bytes_per_map && control_bytes) {
-					cont = false;
+				if (sized && bytes_written >= target) {
+					break;
 				}
 			}
+			stats.flush(context);
 			
 			fs.close();
 		}
@@ -316,6 +357,9 @@ public class LDATextGenerator extends Configured {
 		
 		Utils.checkHdfsPath(options.getResultPath());
 		Path fout = options.getResultPath();
+		if (vectors) {
+			fout = new Path(fout, TF_VECTORS_DIR);
+		}
 		
 		setOptions(conf);
 		
@@ -325,15 +369,21 @@ public class LDATextGenerator extends Configured {
 	    job.setJobName("Create LDA-text data");
 
 		job.setOutputKeyClass(Text.class);
-		job.setOutputValueClass(Text.class);
+		if (vectors) {
+			job.setOutputValueClass(VectorWritable.class);
+			outputFormatClass = SequenceFileOutputFormat.class;
+		} else {
+			job.setOutputValueClass(Text.class);
+		}
 		
-		job.setInputFormatClass(LDAInputFormat.class);
+		job.setInputFormatClass(SlotRangeInputFormat.class);
 		job.setMapperClass(DummyToTextMapper.class);
 		
 		job.setNumReduceTasks(0);
 		
 		job.setOutputFormatClass(outputFormatClass);
 		FileOutputFormat.setOutputPath(job, fout);
+		Utils.setFinalOutput(options, job.getConfiguration());
 		
 		log.info("Running Job: Create LDA-text data");
 		
@@ -341,18 +391,49 @@ public class LDATextGenerator extends Configured {
 //		log.info("WORDS_LINE: "+conf.getInt(WORDS_PER_LINE, 0));
 //		log.info("TOPICS_NUM: "+conf.getInt(NUM_TOPICS, 0));
 //		log.info("ALPHA: "+conf.getDouble(ALPHA, 1));
-//		log.info("BYTES_MAP: "+conf.getLong(BYTES_PER_MAP, 0));
+//		log.info("TOTAL_BYTES: "+conf.getLong(TOTAL_BYTES, 0));
 		
 		log.info("Data output " + fout + "");
 		Date startTime = new Date();
 	    log.info("Job started: " + startTime);
 	    int ret = job.waitForCompletion(true) ? 0 : 1;
+	    RunReport.add(job);
 	    Date endTime = new Date();
 	    log.info("Job ended: " + endTime);
 	    log.info("The job took " + 
 	                       (endTime.getTime() - startTime.getTime()) /1000 + 
 	                       " seconds.");
 		log.info("Finished Running Job: Create LDA-text data");
+		
+		if (vectors) {
+			writeDictionary(new Path(options.getResultPath(), DICTIONARY_FILE));
+		}
+	}
+
+	/***
+	 * Write the term ids used in the vectors as mahout's dictionary, a
+	 * SequenceFile from each term to its id.
+	 */
+	@SuppressWarnings("deprecation")
+	private void writeDictionary(Path dictionary) throws IOException {
+		
+		FileSystem fs = dictionary.getFileSystem(conf);
+		BufferedReader invoca = new BufferedReader(new InputStreamReader(fs.open(vocafile), "UTF-8"));
+		SequenceFile.Writer writer = SequenceFile.createWriter(fs, conf, dictionary,
+				Text.class, IntWritable.class);
+		try {
+			Text term = new Text();
+			IntWritable id = new IntWritable();
+			for (int i=0; i<num_terms; i++) {
+				term.set(invoca.readLine().trim());
+				id.set(i);
+				writer.append(term, id);
+			}
+		} finally {
+			invoca.close();
+			writer.close();
+		}
+		log.info("Dictionary of " + num_terms + " terms written to " + dictionary);
 	}
 
 	public void generate() throws IOException, URISyntaxException, ClassNotFoundException, InterruptedException {
@@ -1,37 +1,74 @@
 package es.udc.rgen.text;
 
-import java.util.Random;
+import org.apache.commons.math3.random.RandomGenerator;
 	
+/***
+ * Multinomial sampled in constant time with Vose's alias method: the
+ * outcomes are spread over range equally likely columns, each holding its
+ * own outcome with probability prob[i] and alias[i] otherwise. A sample
+ * takes a single uniform draw, which picks both the column and the side.
+ *
+ * The tables are never modified after construction; the generator is the
+ * only state a sample changes, so each thread should pass its own. prob is
+ * kept in single precision, which halves the table of large vocabularies.
+ */
 public class Multinomial {
-	static Random generator;
-	double[] distribution;
-	int range;
+	private final RandomGenerator generator;
+	private final float[] prob;
+	private final int[] alias;
+	private final int range;
 
 	//Constructor
-	Multinomial(Random gen, double[] probabilities){
+	Multinomial(RandomGenerator gen, double[] probabilities){
 		generator = gen;
 		range = probabilities.length;
-		distribution = new double[range];
+		prob = new float[range];
+		alias = new int[range];
 		double sumProb = 0;
 		for (double value : probabilities){
 			sumProb += value;
 		}
-		double position = 0;
+
+		double[] scaled = new double[range];
+		int[] small = new int[range];
+		int[] large = new int[range];
+		int numSmall = 0, numLarge = 0;
 		for (int i = 0; i < range; ++i){
-			position += probabilities[i] / sumProb;
-			distribution[i] = position;
+			scaled[i] = probabilities[i] * range / sumProb;
+			if (scaled[i] < 1.0) {
+				small[numSmall++] = i;
+			} else {
+				large[numLarge++] = i;
+			}
+		}
+		while (numSmall > 0 && numLarge > 0) {
+			int less = small[--numSmall];
+			int more = large[--numLarge];
+			prob[less] = (float) scaled[less];
+			alias[less] = more;
+			scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+			if (scaled[more] < 1.0) {
+				small[numSmall++] = more;
+			} else {
+				large[numLarge++] = more;
+			}
+		}
+		// what is left is 1 but for rounding errors
+		while (numLarge > 0) {
+			prob[large[--numLarge]] = 1.0f;
+		}
+		while (numSmall > 0) {
+			prob[small[--numSmall]] = 1.0f;
 		}
-		distribution[range -1] = 1.0;
 	}
 
 	int sample() {
-		double uniform = generator.nextDouble();
-		for (int i = 0; i < range; ++i){
-			if (uniform < distribution[i]){
-				return i;
-			}
+		double uniform = generator.nextDouble() * range;
+		int column = (int) uniform;
+		if (column >= range) {
+			column = range - 1;
 		}
-		return range - 1;
+		return (uniform - column < prob[column]) ? column : alias[column];
 	}
 
-}
\ No newline at end of file
+}
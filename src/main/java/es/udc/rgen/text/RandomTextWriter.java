@@ -19,9 +19,8 @@
 package es.udc.rgen.text;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.charset.Charset;
 import java.util.Date;
-import java.util.List;
 import java.util.Random;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -29,15 +28,20 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.*;
-import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.hadoop.util.Tool;
 
 import es.udc.rgen.DataOptions;
+import es.udc.rgen.misc.GenStats;
+import es.udc.rgen.misc.RunReport;
+import es.udc.rgen.misc.SlotRangeInputFormat;
+import es.udc.rgen.misc.SlotRangeSplit;
 import es.udc.rgen.misc.Utils;
+import es.udc.rgen.misc.ZipfCore;
 
 /**
  * This program uses map/reduce to just run a distributed job where there is
@@ -74,6 +78,10 @@ import es.udc.rgen.misc.Utils;
  * Equivalently, {@link RandomTextWriter} also supports all the above options
  * and ones supported by {@link Tool} via the command-line.
  * 
+ * Words are drawn uniformly from the word list, or with
+ * <code>-dist zipf:<i>exponent</i></code> following a Zipfian distribution
+ * over it (the first words being the most frequent), as in real text.
+ * 
  * To run: bin/hadoop jar hadoop-${version}-examples.jar randomtextwriter
  *            [-outFormat <i>output format class</i>] <i>output</i> 
  */
@@ -88,9 +96,14 @@ public class RandomTextWriter extends Configured {
   public static final String MIN_VALUE = "mapreduce.randomtextwriter.minwordsvalue";
   public static final String MIN_KEY = "mapreduce.randomtextwriter.minwordskey";
   public static final String MAX_KEY = "mapreduce.randomtextwriter.maxwordskey";
+  public static final String ZIPF_EXPONENT = "mapreduce.randomtextwriter.zipfexponent";
+  
+  private static final String WORD_ZIPF_FILE_NAME = "randomtextzipf";
   
   private DataOptions options;
   private Class<? extends OutputFormat> outputFormatClass = SequenceFileOutputFormat.class;
+  // words are drawn uniformly unless positive
+  private double zipfExponent = 0;
   
   private Configuration conf;
   
@@ -105,6 +118,16 @@ public class RandomTextWriter extends Configured {
 	  try {
 	    if ("-outFormat".equals(args[i])) {
 	      outputFormatClass = Class.forName(args[++i]).asSubclass(OutputFormat.class);
+	    } else if ("-dist".equals(args[i])) {
+	      String dist = args[++i];
+	      if (dist.startsWith("zipf:")) {
+	        zipfExponent = Double.parseDouble(dist.substring("zipf:".length()));
+	        if (zipfExponent <= 0) {
+	          DataOptions.printUsage("Zipf exponent should be larger than 0 --> " + dist + " <--");
+	        }
+	      } else if (!"uniform".equals(dist)) {
+	        DataOptions.printUsage("Unknown randomtext word distribution --> " + dist + " <--");
+	      }
 	    } else {
 	      if (!"".equals(args[i])) {
 	    	  DataOptions.printUsage("Unknown randomtext data arguments --> " + args[i] + " <--");
@@ -122,77 +145,11 @@ public class RandomTextWriter extends Configured {
    */
   static enum Counters { RECORDS_WRITTEN, BYTES_WRITTEN }
   
-  /**
-   * A custom input format that creates virtual inputs of a single string
-   * for each map.
-   */
-  static class RandomInputFormat extends InputFormat<Text, Text> {
-
-    /** 
-     * Generate the requested number of file splits, with the filename
-     * set to the filename of the output file.
-     */
-    public List<InputSplit> getSplits(JobContext job) throws IOException {
-      List<InputSplit> result = new ArrayList<InputSplit>();
-      Path outDir = FileOutputFormat.getOutputPath(job);
-      int numSplits = job.getConfiguration().getInt(NUM_MAPS, 1);
-      for(int i=0; i < numSplits; ++i) {
-        result.add(new FileSplit(new Path(outDir, "dummy-split-" + i), 0, 1, 
-                                  (String[])null));
-      }
-      return result;
-    }
-
-    /**
-     * Return a single record (filename, "") where the filename is taken from
-     * the file split.
-     */
-    static class RandomRecordReader extends RecordReader<Text, Text> {
-      Path name;
-      Text key = null;
-      Text value = new Text();
-      public RandomRecordReader(Path p) {
-        name = p;
-      }
-      
-      public void initialize(InputSplit split,
-                             TaskAttemptContext context)
-      throws IOException, InterruptedException {
-    	  
-      }
-      
-      public boolean nextKeyValue() {
-        if (name != null) {
-          key = new Text();
-          key.set(name.getName());
-          name = null;
-          return true;
-        }
-        return false;
-      }
-      
-      public Text getCurrentKey() {
-        return key;
-      }
-      
-      public Text getCurrentValue() {
-        return value;
-      }
-      
-      public void close() {}
-
-      public float getProgress() {
-        return 0.0f;
-      }
-    }
-
-    public RecordReader<Text, Text> createRecordReader(InputSplit split,
-        TaskAttemptContext context) throws IOException, InterruptedException {
-      return new RandomRecordReader(((FileSplit) split).getPath());
-    }
-  }
-  
-  static class RandomTextMapper extends Mapper<Text, Text, Text, Text> {
+  static class RandomTextMapper extends Mapper<LongWritable, SlotRangeSplit, Text, Text> {
+    
+    // counters are updated once per this many records
+    private static final int COUNTER_BATCH = 1000;
+    private static final byte[] SPACE = {' '};
     
     private long numBytesToWrite;
     private int minWordsInKey;
@@ -200,11 +157,20 @@ public class RandomTextWriter extends Configured {
     private int minWordsInValue;
     private int wordsInValueRange;
     private Random random = new Random();
+    private GenStats stats = new GenStats();
+    // word ranks follow this zipf distribution, uniform if null
+    private ZipfCore zipf = null;
+    
+    private byte[][] wordBytes;
+    private Text keyWords = new Text();
+    private Text valueWords = new Text();
+    private Counter bytesCounter;
+    private Counter recordsCounter;
     
     /**
      * Save the configuration value that we need to write the data.
      */
-    public void setup(Context context) {
+    public void setup(Context context) throws IOException {
       Configuration conf = context.getConfiguration();
       numBytesToWrite = conf.getLong(BYTES_PER_MAP, 1*1024*1024*1024);
       //log.info("-------------------------------------------> BYTES PER MAP: "+numBytesToWrite);
@@ -212,47 +178,92 @@ public class RandomTextWriter extends Configured {
       wordsInKeyRange = (conf.getInt(MAX_KEY, 10) - minWordsInKey);
       minWordsInValue = conf.getInt(MIN_VALUE, 10);
       wordsInValueRange = (conf.getInt(MAX_VALUE, 100) - minWordsInValue);
+      
+      // encode the words once, sentences are built from their bytes
+      Charset utf8 = Charset.forName("UTF-8");
+      wordBytes = new byte[words.length][];
+      for (int i=0; i < words.length; ++i) {
+        wordBytes[i] = words[i].getBytes(utf8);
+      }
+      if (null != conf.get(ZIPF_EXPONENT)) {
+        try {
+          zipf = Utils.getSharedZipfCore(WORD_ZIPF_FILE_NAME, conf);
+        } catch (ClassNotFoundException e) {
+          throw new IOException("Unable to read shared word zipf core", e);
+        }
+        if (null == zipf) {
+          throw new IOException("Shared word zipf core " + WORD_ZIPF_FILE_NAME + " not found");
+        }
+      }
+      bytesCounter = context.getCounter(Counters.BYTES_WRITTEN);
+      recordsCounter = context.getCounter(Counters.RECORDS_WRITTEN);
     }
     
     /**
-     * Given an output filename, write a bunch of random records to it.
+     * Write a bunch of random records, drawn from the seed of the slot.
      */
-    public void map(Text key, Text value, Context context) throws IOException,InterruptedException {
+    public void map(LongWritable key, SlotRangeSplit value, Context context) throws IOException,InterruptedException {
+      random.setSeed(value.getSeed());
+      if (null != zipf) {
+        // the serialized core carries its random state, every map needs its own
+        zipf.setRandSeed(random.nextLong());
+      }
       int itemCount = 0;
+      long batchBytes = 0;
       while (numBytesToWrite > 0) {
+        long t = stats.start();
         // Generate the key/value 
         int noWordsKey = minWordsInKey + 
           (wordsInKeyRange != 0 ? random.nextInt(wordsInKeyRange) : 0);
         int noWordsValue = minWordsInValue + 
           (wordsInValueRange != 0 ? random.nextInt(wordsInValueRange) : 0);
-        Text keyWords = generateSentence(noWordsKey);
-        Text valueWords = generateSentence(noWordsValue);
+        generateSentence(keyWords, noWordsKey);
+        generateSentence(valueWords, noWordsValue);
+        stats.add(es.udc.rgen.misc.Counters.RANDOM_DRAWS,
+            (null == zipf) ? 2 + noWordsKey + noWordsValue : 2);
+        t = stats.lap(es.udc.rgen.misc.Counters.GENERATE_NANOS, t);
         
         // Write the sentence 
         context.write(keyWords, valueWords);
+        t = stats.lap(es.udc.rgen.misc.Counters.WRITE_NANOS, t);
         
-        numBytesToWrite -= (keyWords.getLength() + valueWords.getLength());
+        int recordBytes = keyWords.getLength() + valueWords.getLength();
+        stats.record(recordBytes);
+        numBytesToWrite -= recordBytes;
+        batchBytes += recordBytes;
         
         // Update counters, progress etc.
-        context.getCounter(Counters.BYTES_WRITTEN).increment(
-                  keyWords.getLength() + valueWords.getLength());
-        context.getCounter(Counters.RECORDS_WRITTEN).increment(1);
-        if (++itemCount % 200 == 0) {
+        if (++itemCount % COUNTER_BATCH == 0) {
+          bytesCounter.increment(batchBytes);
+          recordsCounter.increment(COUNTER_BATCH);
+          batchBytes = 0;
+        }
+        if (itemCount % 200 == 0) {
           context.setStatus("wrote record " + itemCount + ". " + 
                              numBytesToWrite + " bytes left.");
         }
       }
+      bytesCounter.increment(batchBytes);
+      recordsCounter.increment(itemCount % COUNTER_BATCH);
+      if (null != zipf) {
+        stats.add(es.udc.rgen.misc.Counters.ZIPF_SAMPLES, zipf.samples);
+        zipf.samples = 0;
+      }
+      stats.flush(context);
       context.setStatus("done with " + itemCount + " records.");
     }
     
-    private Text generateSentence(int noWords) {
-      StringBuffer sentence = new StringBuffer();
-      String space = " ";
+    /**
+     * Fill sentence with noWords random words, each followed by a space.
+     */
+    private void generateSentence(Text sentence, int noWords) {
+      sentence.clear();
       for (int i=0; i < noWords; ++i) {
-        sentence.append(words[random.nextInt(words.length)]);
-        sentence.append(space);
+        byte[] word = wordBytes[(null == zipf) ?
+            random.nextInt(wordBytes.length) : (int) zipf.next()];
+        sentence.append(word, 0, word.length);
+        sentence.append(SPACE, 0, 1);
       }
-      return new Text(sentence.toString());
     }
   }
   
@@ -279,10 +290,27 @@ public class RandomTextWriter extends Configured {
         return -2;
     }
     conf.setInt(NUM_MAPS, numMaps);
+    SlotRangeInputFormat.setSlots(conf, numMaps, totalBytesToWrite);
+    options.shareSeed(conf);
     
     long numBytesToWritePerMap = (totalBytesToWrite / numMaps);
     conf.setLong(BYTES_PER_MAP, numBytesToWritePerMap);
     
+    if (zipfExponent > 0) {
+      // one table for all maps, built here and shipped through the cache
+      long wordBytes = 0;
+      for (int i=0; i < words.length; ++i) {
+        wordBytes += words[i].length() + 1;
+      }
+      long samples = totalBytesToWrite / Math.max(1, wordBytes / words.length);
+      Path zipfPath = new Path(options.getWorkPath(), WORD_ZIPF_FILE_NAME);
+      Utils.serialZipf(words.length, zipfExponent, samples,
+          DataOptions.WORD_SIMULATE_SPACE_RATIO, zipfPath);
+      Utils.shareZipfCore(zipfPath, WORD_ZIPF_FILE_NAME, conf);
+      conf.set(ZIPF_EXPONENT, Double.toString(zipfExponent));
+      log.info("Drawing words with zipf exponent " + zipfExponent);
+    }
+    
     Job job = Job.getInstance(conf);
     
     job.setJarByClass(RandomTextWriter.class);
@@ -291,11 +319,12 @@ public class RandomTextWriter extends Configured {
     job.setOutputKeyClass(Text.class);
     job.setOutputValueClass(Text.class);
     
-    job.setInputFormatClass(RandomTextWriter.RandomInputFormat.class);
+    job.setInputFormatClass(SlotRangeInputFormat.class);
     job.setMapperClass(RandomTextMapper.class);
 
     job.setOutputFormatClass(outputFormatClass);
     FileOutputFormat.setOutputPath(job, options.getResultPath());
+    Utils.setFinalOutput(options, job.getConfiguration());
     
     log.info("Running " + numMaps + " maps.");
     
@@ -305,6 +334,7 @@ public class RandomTextWriter extends Configured {
     Date startTime = new Date();
     log.info("Job started: " + startTime);
     int ret = job.waitForCompletion(true) ? 0 : 1;
+    RunReport.add(job);
     Date endTime = new Date();
     log.info("Job ended: " + endTime);
     log.info("The job took " + 
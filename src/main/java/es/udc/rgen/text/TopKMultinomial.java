@@ -0,0 +1,138 @@
+package es.udc.rgen.text;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/***
+ * Compact term distribution of a topic: an alias table over its k most
+ * likely terms plus one outcome standing for the rest, whose mass is
+ * sampled from a residual distribution shared by every topic.
+ *
+ * The residual of a term is its probability summed over the topics where
+ * it is not among the top k, so the tail of each topic is approximated by
+ * the tail of the whole model. Residual draws falling on a top term of
+ * the topic are redrawn, up to RESIDUAL_TRIES times, so that its top
+ * terms keep close to their exact probabilities. A task then holds k
+ * entries per topic and a single table over the vocabulary, instead of a
+ * table per topic.
+ */
+class TopKMultinomial extends Multinomial {
+	private static final int RESIDUAL_TRIES = 8;
+
+	private final int[] terms;
+	private final Multinomial residual;
+
+	private TopKMultinomial(RandomGenerator gen, int[] terms, double[] weights,
+			Multinomial residual) {
+		super(gen, weights);
+		this.terms = terms;
+		this.residual = residual;
+	}
+
+	@Override
+	int sample() {
+		int i = super.sample();
+		if (i < terms.length) {
+			return terms[i];
+		}
+		int term = residual.sample();
+		for (int tries=1; tries<RESIDUAL_TRIES && Arrays.binarySearch(terms, term) >= 0; tries++) {
+			term = residual.sample();
+		}
+		return term;
+	}
+
+	/***
+	 * Build the distributions of every topic of model, keeping the k most
+	 * likely terms of each.
+	 */
+	static Multinomial[] build(RandomGenerator gen, LDAModel model, int k) {
+		int topics = model.getTopics();
+		int numTerms = model.getTerms();
+		int[][] top = new int[topics][];
+		double[][] weights = new double[topics][];
+		double[] tail = new double[numTerms];
+		double[] beta = new double[numTerms];
+
+		for (int j=0; j<topics; j++) {
+			model.getTopic(j, beta);
+			top[j] = selectTop(beta, k);
+			Arrays.sort(top[j]);
+			weights[j] = new double[k + 1];
+			double rest = 0;
+			for (int i=0; i<numTerms; i++) {
+				rest += beta[i];
+				tail[i] += beta[i];
+			}
+			for (int i=0; i<k; i++) {
+				int term = top[j][i];
+				weights[j][i] = beta[term];
+				rest -= beta[term];
+				tail[term] -= beta[term];
+			}
+			weights[j][k] = Math.max(rest, 0);
+		}
+		for (int i=0; i<numTerms; i++) {
+			tail[i] = Math.max(tail[i], 0);
+		}
+
+		Multinomial residual = new Multinomial(gen, tail);
+		Multinomial[] result = new Multinomial[topics];
+		for (int j=0; j<topics; j++) {
+			result[j] = new TopKMultinomial(gen, top[j], weights[j], residual);
+		}
+		return result;
+	}
+
+	/***
+	 * Indexes of the k largest values, kept in a min heap so that most
+	 * values are rejected with a single comparison.
+	 */
+	private static int[] selectTop(double[] values, int k) {
+		int[] heap = new int[k];
+		for (int i=0; i<k; i++) {
+			heap[i] = i;
+			siftUp(heap, values, i);
+		}
+		for (int i=k; i<values.length; i++) {
+			if (values[i] > values[heap[0]]) {
+				heap[0] = i;
+				siftDown(heap, values, k);
+			}
+		}
+		return heap;
+	}
+
+	private static void siftUp(int[] heap, double[] values, int pos) {
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+			if (values[heap[parent]] <= values[heap[pos]]) {
+				return;
+			}
+			swap(heap, parent, pos);
+			pos = parent;
+		}
+	}
+
+	private static void siftDown(int[] heap, double[] values, int size) {
+		int pos = 0;
+		while (2 * pos + 1 < size) {
+			int child = 2 * pos + 1;
+			if (child + 1 < size && values[heap[child + 1]] < values[heap[child]]) {
+				child++;
+			}
+			if (values[heap[pos]] <= values[heap[child]]) {
+				return;
+			}
+			swap(heap, pos, child);
+			pos = child;
+		}
+	}
+
+	private static void swap(int[] heap, int i, int j) {
+		int tmp = heap[i];
+		heap[i] = heap[j];
+		heap[j] = tmp;
+	}
+}
@@ -21,10 +21,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
-import java.math.BigInteger;
 import java.util.zip.Checksum;
 
-import org.apache.hadoop.util.PureJavaCrc32;
 
 /** 
  * A single process data generator for the terasort data. Based on gensort.c 
@@ -38,54 +36,63 @@ public class GenSort {
    */
   static void generateRecord(byte[] recBuf, Unsigned16 rand, 
                                      Unsigned16 recordNumber) {
+    generateRecord(recBuf, 0, rand, recordNumber);
+  }
+
+  /**
+   * Generate a "binary" record into recBuf starting at offset.
+   */
+  static void generateRecord(byte[] recBuf, int offset, Unsigned16 rand, 
+                             Unsigned16 recordNumber) {
     /* generate the 10-byte key using the high 10 bytes of the 128-bit
      * random number
      */
     for(int i=0; i < 10; ++i) {
-      recBuf[i] = rand.getByte(i);
+      recBuf[offset + i] = rand.getByte(i);
     }
 
     /* add 2 bytes of "break" */
-    recBuf[10] = 0x00;
-    recBuf[11] = 0x11;
+    recBuf[offset + 10] = 0x00;
+    recBuf[offset + 11] = 0x11;
 
     /* convert the 128-bit record number to 32 bits of ascii hexadecimal
      * as the next 32 bytes of the record.
      */
     for (int i = 0; i < 32; i++) {
-      recBuf[12 + i] = (byte) recordNumber.getHexDigit(i);
+      recBuf[offset + 12 + i] = (byte) recordNumber.getHexDigit(i);
     }
 
     /* add 4 bytes of "break" data */
-    recBuf[44] = (byte) 0x88;
-    recBuf[45] = (byte) 0x99;
-    recBuf[46] = (byte) 0xAA;
-    recBuf[47] = (byte) 0xBB;
+    recBuf[offset + 44] = (byte) 0x88;
+    recBuf[offset + 45] = (byte) 0x99;
+    recBuf[offset + 46] = (byte) 0xAA;
+    recBuf[offset + 47] = (byte) 0xBB;
 
     /* add 48 bytes of filler based on low 48 bits of random number */
     for(int i=0; i < 12; ++i) {
-      recBuf[48+i*4] = recBuf[49+i*4] = recBuf[50+i*4] = recBuf[51+i*4] =
+      int pos = offset + 48 + i*4;
+      recBuf[pos] = recBuf[pos+1] = recBuf[pos+2] = recBuf[pos+3] =
         (byte) rand.getHexDigit(20 + i);
     }
 
     /* add 4 bytes of "break" data */
-    recBuf[96] = (byte) 0xCC;
-    recBuf[97] = (byte) 0xDD;
-    recBuf[98] = (byte) 0xEE;
-    recBuf[99] = (byte) 0xFF;
+    recBuf[offset + 96] = (byte) 0xCC;
+    recBuf[offset + 97] = (byte) 0xDD;
+    recBuf[offset + 98] = (byte) 0xEE;
+    recBuf[offset + 99] = (byte) 0xFF;
   }
 
 
-  private static BigInteger makeBigInteger(long x) {
-    byte[] data = new byte[8];
-    for(int i=0; i < 8; ++i) {
-      data[i] = (byte) (x >>> (56 - 8*i));
-    }
-    return new BigInteger(1, data);
+  /**
+   * Divide a 64 bit value, read as unsigned, by 95. Halving it first makes
+   * the signed division safe, and the quotient is then off by at most one.
+   */
+  private static long unsignedDivide95(long x) {
+    long quotient = ((x >>> 1) / 95) << 1;
+    long remainder = x - quotient * 95;
+    return remainder >= 95 ? quotient + 1 : quotient;
   }
 
-  private static final BigInteger NINETY_FIVE = new BigInteger("95");
-
   /**
    * Generate an ascii record suitable for all sort benchmarks including 
    * PennySort.
@@ -96,28 +103,19 @@ public class GenSort {
     /* generate the 10-byte ascii key using mostly the high 64 bits.
      */
     long temp = rand.getHigh8();
-    if (temp < 0) {
-      // use biginteger to avoid the negative sign problem
-      BigInteger bigTemp = makeBigInteger(temp);
-      recBuf[0] = (byte) (' ' + (bigTemp.mod(NINETY_FIVE).longValue()));
-      temp = bigTemp.divide(NINETY_FIVE).longValue();
-    } else {
-      recBuf[0] = (byte) (' ' + (temp % 95));
-      temp /= 95;      
-    }
+    // the first division treats the value as unsigned; after it the
+    // quotient is positive and plain long arithmetic is exact
+    long quotient = unsignedDivide95(temp);
+    recBuf[0] = (byte) (' ' + (temp - quotient * 95));
+    temp = quotient;
     for(int i=1; i < 8; ++i) {
       recBuf[i] = (byte) (' ' + (temp % 95));
       temp /= 95;      
     }
     temp = rand.getLow8();
-    if (temp < 0) {
-      BigInteger bigTemp = makeBigInteger(temp);
-      recBuf[8] = (byte) (' ' + (bigTemp.mod(NINETY_FIVE).longValue()));
-      temp = bigTemp.divide(NINETY_FIVE).longValue();      
-    } else {
-      recBuf[8] = (byte) (' ' + (temp % 95));
-      temp /= 95;
-    }
+    quotient = unsignedDivide95(temp);
+    recBuf[8] = (byte) (' ' + (temp - quotient * 95));
+    temp = quotient;
     recBuf[9] = (byte)(' ' + (temp % 95));
 
     /* add 2 bytes of "break" */
@@ -180,7 +178,7 @@ public class GenSort {
     byte[] row = new byte[100];
     Unsigned16 recordNumber = new Unsigned16(firstRecordNumber);
     Unsigned16 lastRecordNumber = new Unsigned16(firstRecordNumber);
-    Checksum crc = new PureJavaCrc32();
+    Checksum crc = RecordChecksum.newCrc32();
     Unsigned16 tmp = new Unsigned16();
     lastRecordNumber.add(recordsToGenerate);
     Unsigned16 ONE = new Unsigned16(1);
@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.udc.rgen.text.tera;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sorts 10 byte keys as unsigned byte strings, optionally carrying an int
+ * per key (e.g. the position of its record). Each key is packed in two
+ * parallel arrays: its first 8 bytes as a big endian long and its last 2
+ * bytes as a char, so comparing the unsigned values orders them as
+ * Text.compareTo does.
+ *
+ * The keys are first spread in 256 buckets by their first byte, and the
+ * buckets are then sorted in parallel by a least significant digit radix
+ * sort on the remaining 9 bytes. The digit counts of a bucket are taken in
+ * a single pass, and passes where all its keys share the digit are skipped.
+ */
+class KeyRadixSort {
+
+  private static final int RADIX = 256;
+  private static final int BUCKET_DIGITS = 9;
+
+  /**
+   * Sort the first length keys of hi and lo in place.
+   * @param threads the number of threads sorting the buckets
+   */
+  static void sort(long[] hi, char[] lo, int length, int threads)
+      throws InterruptedException {
+    sort(hi, lo, null, new long[length], new char[length], null,
+         0, length, threads);
+  }
+
+  /**
+   * Sort the keys in [from, to) of hi and lo in place, moving the entries of
+   * index along with them. The tmp arrays are scratch space of at least to
+   * entries; index and indexTmp may both be null.
+   * @param threads the number of threads sorting the buckets
+   */
+  static void sort(long[] hi, char[] lo, int[] index,
+                   long[] hiTmp, char[] loTmp, int[] indexTmp,
+                   int from, int to, int threads)
+      throws InterruptedException {
+    int[] start = new int[RADIX + 1];
+    start[0] = from;
+    for (int i = from; i < to; ++i) {
+      start[(int) (hi[i] >>> 56) + 1]++;
+    }
+    for (int b = 0; b < RADIX; ++b) {
+      start[b + 1] += start[b];
+    }
+    int[] next = new int[RADIX];
+    System.arraycopy(start, 0, next, 0, RADIX);
+    for (int i = from; i < to; ++i) {
+      int p = next[(int) (hi[i] >>> 56)]++;
+      hiTmp[p] = hi[i];
+      loTmp[p] = lo[i];
+      if (index != null) {
+        indexTmp[p] = index[i];
+      }
+    }
+
+    List<BucketSorter> buckets = new ArrayList<BucketSorter>();
+    for (int b = 0; b < RADIX; ++b) {
+      int size = start[b + 1] - start[b];
+      if (size == 1) {
+        hi[start[b]] = hiTmp[start[b]];
+        lo[start[b]] = loTmp[start[b]];
+        if (index != null) {
+          index[start[b]] = indexTmp[start[b]];
+        }
+      } else if (size > 1) {
+        buckets.add(new BucketSorter(hiTmp, loTmp, indexTmp, hi, lo, index,
+                                     start[b], start[b + 1]));
+      }
+    }
+
+    if (threads <= 1 || buckets.size() <= 1) {
+      for (BucketSorter bucket : buckets) {
+        bucket.call();
+      }
+      return;
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      for (Future<Void> done : pool.invokeAll(buckets)) {
+        done.get();
+      }
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Digit d of a key, 0 being its last byte and 8 its second one.
+   */
+  private static int digit(long hi, char lo, int d) {
+    if (d < 2) {
+      return (lo >>> (8 * d)) & 0xff;
+    }
+    return (int) (hi >>> (8 * (d - 2))) & 0xff;
+  }
+
+  /**
+   * Sorts the keys in [from, to) of src, which share their first byte,
+   * leaving them in dst. Both arrays are used as scratch space.
+   */
+  private static class BucketSorter implements Callable<Void> {
+    private final long[] srcHi;
+    private final char[] srcLo;
+    private final int[] srcIndex;
+    private final long[] dstHi;
+    private final char[] dstLo;
+    private final int[] dstIndex;
+    private final int from;
+    private final int to;
+
+    BucketSorter(long[] srcHi, char[] srcLo, int[] srcIndex,
+                 long[] dstHi, char[] dstLo, int[] dstIndex,
+                 int from, int to) {
+      this.srcHi = srcHi;
+      this.srcLo = srcLo;
+      this.srcIndex = srcIndex;
+      this.dstHi = dstHi;
+      this.dstLo = dstLo;
+      this.dstIndex = dstIndex;
+      this.from = from;
+      this.to = to;
+    }
+
+    public Void call() {
+      int[][] counts = new int[BUCKET_DIGITS][RADIX];
+      for (int i = from; i < to; ++i) {
+        for (int d = 0; d < BUCKET_DIGITS; ++d) {
+          counts[d][digit(srcHi[i], srcLo[i], d)]++;
+        }
+      }
+
+      long[] inHi = srcHi, outHi = dstHi;
+      char[] inLo = srcLo, outLo = dstLo;
+      int[] inIndex = srcIndex, outIndex = dstIndex;
+      int size = to - from;
+      int[] next = new int[RADIX];
+      for (int d = 0; d < BUCKET_DIGITS; ++d) {
+        int[] count = counts[d];
+        int pos = from;
+        boolean trivial = false;
+        for (int b = 0; b < RADIX; ++b) {
+          if (count[b] == size) {
+            trivial = true;
+            break;
+          }
+          next[b] = pos;
+          pos += count[b];
+        }
+        if (trivial) {
+          continue;
+        }
+        for (int i = from; i < to; ++i) {
+          int p = next[digit(inHi[i], inLo[i], d)]++;
+          outHi[p] = inHi[i];
+          outLo[p] = inLo[i];
+          if (inIndex != null) {
+            outIndex[p] = inIndex[i];
+          }
+        }
+        long[] hiSwap = inHi; inHi = outHi; outHi = hiSwap;
+        char[] loSwap = inLo; inLo = outLo; outLo = loSwap;
+        int[] indexSwap = inIndex; inIndex = outIndex; outIndex = indexSwap;
+      }
+      if (inHi != dstHi) {
+        System.arraycopy(inHi, from, dstHi, from, size);
+        System.arraycopy(inLo, from, dstLo, from, size);
+        if (inIndex != null) {
+          System.arraycopy(inIndex, from, dstIndex, from, size);
+        }
+      }
+      return null;
+    }
+  }
+}
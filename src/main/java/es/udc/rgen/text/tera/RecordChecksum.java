@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.udc.rgen.text.tera;
+
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.PureJavaCrc32;
+
+/**
+ * Creates the per record checksum summed by teragen, terachecksum and
+ * teravalidate.
+ *
+ * The default is crc32: java.util.zip.CRC32 when the JVM turns it into an
+ * intrinsic (Java 8 and later), PureJavaCrc32 otherwise, where it is the
+ * faster one. Both give the same values, so sums stay comparable with
+ * those of earlier runs. crc32c (Java 9 and later) is a different
+ * polynomial and its sums only match other crc32c runs.
+ */
+public class RecordChecksum {
+
+  public static final String CRC32 = "crc32";
+  public static final String CRC32C = "crc32c";
+
+  private static final boolean INTRINSIC_CRC32 = javaVersion() >= 8;
+
+  /**
+   * @return a crc32 checksum, using the fastest implementation available
+   */
+  public static Checksum newCrc32() {
+    return INTRINSIC_CRC32 ? new CRC32() : new PureJavaCrc32();
+  }
+
+  /**
+   * @return a new checksum of the algorithm configured in
+   *         mapreduce.terasort.checksum
+   */
+  public static Checksum newChecksum(Configuration conf) {
+    String algorithm = conf.get(TeraSortConfigKeys.CHECKSUM.key(),
+                                TeraSortConfigKeys.DEFAULT_CHECKSUM);
+    if (CRC32.equalsIgnoreCase(algorithm)) {
+      return newCrc32();
+    } else if (CRC32C.equalsIgnoreCase(algorithm)) {
+      try {
+        return (Checksum) Class.forName("java.util.zip.CRC32C").newInstance();
+      } catch (Exception e) {
+        throw new IllegalArgumentException(
+            "crc32c checksums need Java 9 or later", e);
+      }
+    }
+    throw new IllegalArgumentException("Unknown checksum " + algorithm +
+        ", use " + CRC32 + " or " + CRC32C);
+  }
+
+  private static int javaVersion() {
+    String version = System.getProperty("java.specification.version", "1.0");
+    if (version.startsWith("1.")) {
+      version = version.substring(2);
+    }
+    int end = 0;
+    while (end < version.length() && Character.isDigit(version.charAt(end))) {
+      end++;
+    }
+    return end == 0 ? 0 : Integer.parseInt(version.substring(0, end));
+  }
+}
@@ -29,7 +29,6 @@ import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
-import org.apache.hadoop.util.PureJavaCrc32;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 
@@ -38,7 +37,12 @@ public class TeraChecksum extends Configured implements Tool {
       extends Mapper<Text, Text, NullWritable, Unsigned16> {
     private Unsigned16 checksum = new Unsigned16();
     private Unsigned16 sum = new Unsigned16();
-    private Checksum crc32 = new PureJavaCrc32();
+    private Checksum crc32;
+
+    @Override
+    protected void setup(Context context) {
+      crc32 = RecordChecksum.newChecksum(context.getConfiguration());
+    }
 
     public void map(Text key, Text value, 
                     Context context) throws IOException {
@@ -23,6 +23,11 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.Checksum;
 
 import org.apache.commons.logging.Log;
@@ -35,7 +40,6 @@ import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableUtils;
-import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.Job;
@@ -44,9 +48,10 @@ import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
-import org.apache.hadoop.util.PureJavaCrc32;
 
 import es.udc.rgen.DataOptions;
+import es.udc.rgen.misc.GenStats;
+import es.udc.rgen.misc.RunReport;
 import es.udc.rgen.misc.Utils;
 
 /**
@@ -206,50 +211,142 @@ public class TeraGen extends Configured {
   }
 
   /**
-   * The Mapper class that given a row number, will generate the appropriate 
-   * output line.
+   * The Mapper class that generates the rows of its range a block at a
+   * time. Each block is filled (optionally by several threads, each one
+   * skipping ahead to its own sub-range) and then written out row by row,
+   * key and value set on the block buffer, so that any output format gets
+   * the usual records. The checksum is the sum of the crc32 of every row,
+   * as before, computed on the block buffer.
    */
   public static class SortGenMapper 
       extends Mapper<LongWritable, NullWritable, Text, Text> {
 
-    private Text key = new Text();
-    private Text value = new Text();
-    private Unsigned16 rand = null;
-    private Unsigned16 rowId = null;
-    private Unsigned16 checksum = new Unsigned16();
-    private Checksum crc32 = new PureJavaCrc32();
-    private Unsigned16 total = new Unsigned16();
+    private static final int RECORD_LENGTH = TeraInputFormat.KEY_LENGTH +
+                                             TeraInputFormat.VALUE_LENGTH;
     private static final Unsigned16 ONE = new Unsigned16(1);
-    private byte[] buffer = new byte[TeraInputFormat.KEY_LENGTH +
-                                     TeraInputFormat.VALUE_LENGTH];
-    private Counter checksumCounter;
-
-    public void map(LongWritable row, NullWritable ignored,
-        Context context) throws IOException, InterruptedException {
-      if (rand == null) {
-        rowId = new Unsigned16(row.get());
-        rand = Random16.skipAhead(rowId);
-        checksumCounter = context.getCounter(Counters.CHECKSUM);
+
+    private GenStats stats = new GenStats();
+
+    /**
+     * Generates consecutive rows into part of a block.
+     */
+    static class RowGenerator implements Callable<Unsigned16> {
+      private byte[] buffer;
+      private int offset;
+      private long firstRow;
+      private int rows;
+      private Checksum crc32;
+
+      RowGenerator(byte[] buffer, Checksum crc32) {
+        this.buffer = buffer;
+        this.crc32 = crc32;
+      }
+
+      void set(int offset, long firstRow, int rows) {
+        this.offset = offset;
+        this.firstRow = firstRow;
+        this.rows = rows;
+      }
+
+      /**
+       * @return sum of the crc32 of the generated rows
+       */
+      public Unsigned16 call() {
+        Unsigned16 rowId = new Unsigned16(firstRow);
+        Unsigned16 rand = Random16.skipAhead(rowId);
+        Unsigned16 checksum = new Unsigned16();
+        Unsigned16 sum = new Unsigned16();
+        int pos = offset;
+        for (int i = 0; i < rows; ++i) {
+          Random16.nextRand(rand);
+          GenSort.generateRecord(buffer, pos, rand, rowId);
+          crc32.reset();
+          crc32.update(buffer, pos, RECORD_LENGTH);
+          checksum.set(crc32.getValue());
+          sum.add(checksum);
+          rowId.add(ONE);
+          pos += RECORD_LENGTH;
+        }
+        return sum;
       }
-      Random16.nextRand(rand);
-      GenSort.generateRecord(buffer, rand, rowId);
-      key.set(buffer, 0, TeraInputFormat.KEY_LENGTH);
-      value.set(buffer, TeraInputFormat.KEY_LENGTH, 
-                TeraInputFormat.VALUE_LENGTH);
-      context.write(key, value);
-      crc32.reset();
-      crc32.update(buffer, 0, 
-                   TeraInputFormat.KEY_LENGTH + TeraInputFormat.VALUE_LENGTH);
-      checksum.set(crc32.getValue());
-      total.add(checksum);
-      rowId.add(ONE);
     }
 
     @Override
-    public void cleanup(Context context) {
-      if (checksumCounter != null) {
-        checksumCounter.increment(total.getLow8());
+    public void run(Context context) throws IOException, InterruptedException {
+      setup(context);
+
+      RangeInputFormat.RangeInputSplit split =
+          (RangeInputFormat.RangeInputSplit) context.getInputSplit();
+      Configuration conf = context.getConfiguration();
+      int blockRows = Math.max(1, conf.getInt(TeraSortConfigKeys.GEN_BLOCK_ROWS.key(),
+          TeraSortConfigKeys.DEFAULT_GEN_BLOCK_ROWS));
+      int threads = Math.max(1, conf.getInt(TeraSortConfigKeys.GEN_THREADS.key(),
+          TeraSortConfigKeys.DEFAULT_GEN_THREADS));
+
+      byte[] block = new byte[blockRows * RECORD_LENGTH];
+      RowGenerator[] generators = new RowGenerator[threads];
+      for (int i = 0; i < threads; ++i) {
+        generators[i] = new RowGenerator(block, RecordChecksum.newChecksum(conf));
       }
+      ExecutorService pool = (threads > 1) ? Executors.newFixedThreadPool(threads) : null;
+      List<Future<Unsigned16>> parts = new ArrayList<Future<Unsigned16>>(threads);
+
+      Unsigned16 total = new Unsigned16();
+      Text key = new Text();
+      Text value = new Text();
+      long row = split.firstRow;
+      long end = split.firstRow + split.rowCount;
+      try {
+        while (row < end) {
+          int rows = (int) Math.min(blockRows, end - row);
+          long t = GenStats.now();
+          if (null == pool) {
+            generators[0].set(0, row, rows);
+            total.add(generators[0].call());
+          } else {
+            int share = (rows + threads - 1) / threads;
+            parts.clear();
+            for (int i = 0, first = 0; first < rows; ++i, first += share) {
+              generators[i].set(first * RECORD_LENGTH, row + first,
+                                Math.min(share, rows - first));
+              parts.add(pool.submit(generators[i]));
+            }
+            for (Future<Unsigned16> part : parts) {
+              try {
+                total.add(part.get());
+              } catch (ExecutionException e) {
+                throw new IOException("Failed to generate rows of block at " + row,
+                                      e.getCause());
+              }
+            }
+          }
+          t = stats.lap(es.udc.rgen.misc.Counters.GENERATE_NANOS, t);
+
+          for (int i = 0, pos = 0; i < rows; ++i, pos += RECORD_LENGTH) {
+            key.set(block, pos, TeraInputFormat.KEY_LENGTH);
+            value.set(block, pos + TeraInputFormat.KEY_LENGTH,
+                      TeraInputFormat.VALUE_LENGTH);
+            context.write(key, value);
+          }
+          t = stats.lap(es.udc.rgen.misc.Counters.WRITE_NANOS, t);
+
+          stats.add(es.udc.rgen.misc.Counters.RECORDS_DATA_GENERATED, rows);
+          stats.add(es.udc.rgen.misc.Counters.BYTES_DATA_GENERATED,
+                    (long) rows * RECORD_LENGTH);
+          stats.add(es.udc.rgen.misc.Counters.RANDOM_DRAWS, rows);
+          row += rows;
+          context.setStatus("generated " + (row - split.firstRow) + " of " +
+                            split.rowCount + " rows");
+        }
+      } finally {
+        if (null != pool) {
+          pool.shutdownNow();
+        }
+      }
+
+      context.getCounter(Counters.CHECKSUM).increment(total.getLow8());
+      stats.flush(context);
+      cleanup(context);
     }
   }
   
@@ -278,7 +375,9 @@ public class TeraGen extends Configured {
     job.setOutputValueClass(Text.class);
     job.setInputFormatClass(RangeInputFormat.class);
     job.setOutputFormatClass(TeraOutputFormat.class);
-    return job.waitForCompletion(true) ? 0 : 1;
+    boolean success = job.waitForCompletion(true);
+    RunReport.add(job);
+    return success ? 0 : 1;
   }
 
   
@@ -38,10 +38,10 @@ import org.apache.hadoop.mapreduce.TaskAttemptID;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
-import org.apache.hadoop.util.IndexedSortable;
-import org.apache.hadoop.util.QuickSort;
 import org.apache.hadoop.util.StringUtils;
 
+import es.udc.rgen.misc.LocalityScheduler;
+
 /**
  * An input format that reads the first 10 characters of each line as the key
  * and the rest of the line as the value. Both key and value are represented
@@ -56,28 +56,66 @@ public class TeraInputFormat extends FileInputFormat<Text,Text> {
   private static MRJobConfig lastContext = null;
   private static List<InputSplit> lastResult = null;
 
-  static class TextSampler implements IndexedSortable {
-    private ArrayList<Text> records = new ArrayList<Text>();
+  /**
+   * Collects the sampled keys packed in primitive arrays, see KeyRadixSort.
+   * Each sampling thread fills its own SampleBuffer, so adding a key neither
+   * locks nor allocates.
+   */
+  static class TextSampler {
+    private List<SampleBuffer> buffers = new ArrayList<SampleBuffer>();
 
-    public int compare(int i, int j) {
-      Text left = records.get(i);
-      Text right = records.get(j);
-      return left.compareTo(right);
-    }
+    static class SampleBuffer {
+      private long[] hi;
+      private char[] lo;
+      private int size = 0;
 
-    public void swap(int i, int j) {
-      Text left = records.get(i);
-      Text right = records.get(j);
-      records.set(j, left);
-      records.set(i, right);
-    }
+      SampleBuffer(int capacity) {
+        hi = new long[Math.max(capacity, 16)];
+        lo = new char[hi.length];
+      }
 
-    public void addKey(Text key) {
-      synchronized (this) {
-        records.add(new Text(key));
+      /**
+       * Add a key of KEY_LENGTH bytes; shorter keys are padded with zeros.
+       */
+      public void addKey(Text key) {
+        if (size == hi.length) {
+          int capacity = (int) Math.min(2L * size, Integer.MAX_VALUE - 8);
+          long[] newHi = new long[capacity];
+          char[] newLo = new char[capacity];
+          System.arraycopy(hi, 0, newHi, 0, size);
+          System.arraycopy(lo, 0, newLo, 0, size);
+          hi = newHi;
+          lo = newLo;
+        }
+        byte[] bytes = key.getBytes();
+        int length = Math.min(key.getLength(), KEY_LENGTH);
+        long h = 0;
+        int l = 0;
+        for (int i = 0; i < KEY_LENGTH; ++i) {
+          int b = i < length ? bytes[i] & 0xff : 0;
+          if (i < 8) {
+            h = (h << 8) | b;
+          } else {
+            l = (l << 8) | b;
+          }
+        }
+        hi[size] = h;
+        lo[size] = (char) l;
+        size += 1;
       }
     }
 
+    /**
+     * @param expected the number of keys the caller will add
+     * @return a buffer for the keys sampled by one thread
+     */
+    public synchronized SampleBuffer newBuffer(long expected) {
+      SampleBuffer buffer =
+          new SampleBuffer((int) Math.min(expected, 1 << 20));
+      buffers.add(buffer);
+      return buffer;
+    }
+
     /**
      * Find the split points for a given sample. The sample keys are sorted
      * and down sampled to find even split points for the partitions. The
@@ -85,8 +123,11 @@ public class TeraInputFormat extends FileInputFormat<Text,Text> {
      * @param numPartitions the desired number of partitions
      * @return an array of size numPartitions - 1 that holds the split points
      */
-    Text[] createPartitions(int numPartitions) {
-      int numRecords = records.size();
+    Text[] createPartitions(int numPartitions) throws InterruptedException {
+      int numRecords = 0;
+      for (SampleBuffer buffer : buffers) {
+        numRecords += buffer.size;
+      }
       System.out.println("Making " + numPartitions + " from " + numRecords + 
                          " sampled records");
       if (numPartitions > numRecords) {
@@ -94,11 +135,27 @@ public class TeraInputFormat extends FileInputFormat<Text,Text> {
           ("Requested more partitions than input keys (" + numPartitions +
            " > " + numRecords + ")");
       }
-      new QuickSort().sort(this, 0, records.size());
+      long[] hi = new long[numRecords];
+      char[] lo = new char[numRecords];
+      int pos = 0;
+      for (SampleBuffer buffer : buffers) {
+        System.arraycopy(buffer.hi, 0, hi, pos, buffer.size);
+        System.arraycopy(buffer.lo, 0, lo, pos, buffer.size);
+        pos += buffer.size;
+      }
+      KeyRadixSort.sort(hi, lo, numRecords,
+                        Runtime.getRuntime().availableProcessors());
       float stepSize = numRecords / (float) numPartitions;
       Text[] result = new Text[numPartitions-1];
+      byte[] key = new byte[KEY_LENGTH];
       for(int i=1; i < numPartitions; ++i) {
-        result[i-1] = records.get(Math.round(stepSize * i));
+        int idx = Math.round(stepSize * i);
+        for (int j = 0; j < 8; ++j) {
+          key[j] = (byte) (hi[idx] >>> (8 * (7 - j)));
+        }
+        key[8] = (byte) (lo[idx] >>> 8);
+        key[9] = (byte) lo[idx];
+        result[i-1] = new Text(key);
       }
       return result;
     }
@@ -151,8 +208,10 @@ public class TeraInputFormat extends FileInputFormat<Text,Text> {
               inFormat.createRecordReader(splits.get(sampleStep * idx),
               context);
             reader.initialize(splits.get(sampleStep * idx), context);
+            TextSampler.SampleBuffer buffer =
+                sampler.newBuffer(recordsPerSample);
             while (reader.nextKeyValue()) {
-              sampler.addKey(new Text(reader.getCurrentKey()));
+              buffer.addKey(reader.getCurrentKey());
               records += 1;
               if (recordsPerSample <= records) {
                 break;
@@ -297,11 +356,10 @@ public class TeraInputFormat extends FileInputFormat<Text,Text> {
     System.out.println("Spent " + (t2 - t1) + "ms computing base-splits.");
     if (job.getConfiguration().getBoolean(TeraSortConfigKeys.USE_TERA_SCHEDULER.key(),
                                           TeraSortConfigKeys.DEFAULT_USE_TERA_SCHEDULER)) {
-      TeraScheduler scheduler = new TeraScheduler(
-        lastResult.toArray(new FileSplit[0]), job.getConfiguration());
-      lastResult = scheduler.getNewFileSplits();
+      lastResult = LocalityScheduler.schedule(lastResult,
+                                              job.getConfiguration());
       t3 = System.currentTimeMillis(); 
-      System.out.println("Spent " + (t3 - t2) + "ms computing TeraScheduler splits.");
+      System.out.println("Spent " + (t3 - t2) + "ms computing LocalityScheduler splits.");
     }
     return lastResult;
   }
@@ -0,0 +1,354 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.udc.rgen.text.tera;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.mapred.Counters;
+import org.apache.hadoop.mapred.IFile;
+import org.apache.hadoop.mapred.IndexRecord;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapOutputCollector;
+import org.apache.hadoop.mapred.MapOutputFile;
+import org.apache.hadoop.mapred.Merger;
+import org.apache.hadoop.mapred.Merger.Segment;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.SpillRecord;
+import org.apache.hadoop.mapred.TaskAttemptID;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.util.Progress;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * A map output collector for terasort records. Every record is a 10 byte
+ * key and a 90 byte value, so they are buffered in fixed size slots and
+ * each spill is ordered by a counting sort on the partition followed by
+ * KeyRadixSort on the packed keys, instead of the comparator quicksort of
+ * MapOutputBuffer. Spills and the final output use the usual IFile and
+ * index formats, so the shuffle reads them as any other map output.
+ *
+ * init refuses jobs with other key or value classes, a custom key
+ * comparator or a combiner, so the task falls back to the next collector
+ * configured in mapreduce.job.map.output.collector.class.
+ */
+public class TeraMapOutputCollector
+    implements MapOutputCollector<Text,Text> {
+
+  private static final Log LOG =
+      LogFactory.getLog(TeraMapOutputCollector.class);
+
+  /** Length of an index record, MapTask.MAP_OUTPUT_INDEX_RECORD_LENGTH. */
+  private static final int INDEX_RECORD_LENGTH = 24;
+  private static final int KEY_LENGTH = TeraInputFormat.KEY_LENGTH;
+  private static final int VALUE_LENGTH = TeraInputFormat.VALUE_LENGTH;
+  /** Key and value serialized as Text: a one byte vint length each. */
+  private static final int SERIALIZED_KEY = 1 + KEY_LENGTH;
+  private static final int SERIALIZED_VALUE = 1 + VALUE_LENGTH;
+  private static final int SLOT = SERIALIZED_KEY + SERIALIZED_VALUE;
+  /** Buffer bytes per record: the slot, its partition and the sort arrays. */
+  private static final int RECORD_MEMORY = SLOT + 4 + 2 * (8 + 2 + 4);
+
+  private JobConf job;
+  private Reporter reporter;
+  private TaskAttemptID mapId;
+  private MapOutputFile mapOutputFile;
+  private FileSystem rfs;
+  private CompressionCodec codec;
+  private int partitions;
+
+  private byte[] data;
+  private int[] partition;
+  private long[] hi;
+  private char[] lo;
+  private int[] index;
+  private long[] hiTmp;
+  private char[] loTmp;
+  private int[] indexTmp;
+  private int capacity;
+  private int records = 0;
+
+  private List<Path> spills = new ArrayList<Path>();
+  private List<SpillRecord> spillIndexes = new ArrayList<SpillRecord>();
+
+  private Counters.Counter mapOutputRecordCounter;
+  private Counters.Counter mapOutputByteCounter;
+  private Counters.Counter spilledRecordsCounter;
+  private Counters.Counter fileOutputByteCounter;
+
+  public void init(MapOutputCollector.Context context)
+      throws IOException, ClassNotFoundException {
+    job = context.getJobConf();
+    reporter = context.getReporter();
+    mapId = context.getMapTask().getTaskID();
+    mapOutputFile = context.getMapTask().getMapOutputFile();
+
+    if (job.getMapOutputKeyClass() != Text.class ||
+        job.getMapOutputValueClass() != Text.class) {
+      throw new IOException("Map output is not Text/Text");
+    }
+    if (job.get(JobContext.KEY_COMPARATOR) != null) {
+      throw new IOException("Custom map output key comparator");
+    }
+    if (job.getCombinerClass() != null ||
+        job.get(JobContext.COMBINE_CLASS_ATTR) != null) {
+      throw new IOException("Combiners are not supported");
+    }
+
+    partitions = job.getNumReduceTasks();
+    rfs = ((LocalFileSystem) FileSystem.getLocal(job)).getRaw();
+    if (job.getCompressMapOutput()) {
+      Class<? extends CompressionCodec> codecClass =
+          job.getMapOutputCompressorClass(DefaultCodec.class);
+      codec = ReflectionUtils.newInstance(codecClass, job);
+    }
+
+    long sortmb = job.getInt(JobContext.IO_SORT_MB, 100);
+    capacity = (int) Math.min((sortmb << 20) / RECORD_MEMORY,
+                              Integer.MAX_VALUE / SLOT);
+    if (capacity <= 0) {
+      throw new IOException("Invalid \"" + JobContext.IO_SORT_MB + "\": " +
+                            sortmb);
+    }
+    data = new byte[capacity * SLOT];
+    partition = new int[capacity];
+    hi = new long[capacity];
+    lo = new char[capacity];
+    index = new int[capacity];
+    hiTmp = new long[capacity];
+    loTmp = new char[capacity];
+    indexTmp = new int[capacity];
+
+    mapOutputRecordCounter =
+        reporter.getCounter(TaskCounter.MAP_OUTPUT_RECORDS);
+    mapOutputByteCounter = reporter.getCounter(TaskCounter.MAP_OUTPUT_BYTES);
+    spilledRecordsCounter = reporter.getCounter(TaskCounter.SPILLED_RECORDS);
+    fileOutputByteCounter =
+        reporter.getCounter(TaskCounter.MAP_OUTPUT_MATERIALIZED_BYTES);
+    LOG.info("Buffering " + capacity + " terasort records per spill");
+  }
+
+  public void collect(Text key, Text value, int part)
+      throws IOException, InterruptedException {
+    if (key.getLength() != KEY_LENGTH || value.getLength() != VALUE_LENGTH) {
+      throw new IOException("Record is not " + KEY_LENGTH + "+" +
+          VALUE_LENGTH + " bytes, disable " +
+          TeraSortConfigKeys.USE_TERA_COLLECTOR.key());
+    }
+    if (part < 0 || part >= partitions) {
+      throw new IOException("Illegal partition for " + key + " (" + part +
+                            ")");
+    }
+    if (records == capacity) {
+      spills.add(sortAndSpill(spills.size()));
+    }
+
+    int off = records * SLOT;
+    byte[] bytes = key.getBytes();
+    data[off] = (byte) KEY_LENGTH;
+    System.arraycopy(bytes, 0, data, off + 1, KEY_LENGTH);
+    data[off + SERIALIZED_KEY] = (byte) VALUE_LENGTH;
+    System.arraycopy(value.getBytes(), 0, data, off + SERIALIZED_KEY + 1,
+                     VALUE_LENGTH);
+
+    long h = 0;
+    for (int i = 0; i < 8; ++i) {
+      h = (h << 8) | (bytes[i] & 0xff);
+    }
+    hi[records] = h;
+    lo[records] = (char) (((bytes[8] & 0xff) << 8) | (bytes[9] & 0xff));
+    partition[records] = part;
+    records += 1;
+
+    mapOutputRecordCounter.increment(1);
+    mapOutputByteCounter.increment(SLOT);
+  }
+
+  /**
+   * Order the buffered records by partition and key, leaving the record
+   * positions in index.
+   * @return the first record of each partition, and the end at partitions
+   */
+  private int[] sortRecords() throws IOException {
+    int[] start = new int[partitions + 1];
+    for (int i = 0; i < records; ++i) {
+      start[partition[i] + 1]++;
+    }
+    for (int p = 0; p < partitions; ++p) {
+      start[p + 1] += start[p];
+    }
+    int[] next = new int[partitions];
+    System.arraycopy(start, 0, next, 0, partitions);
+    for (int i = 0; i < records; ++i) {
+      int pos = next[partition[i]]++;
+      hiTmp[pos] = hi[i];
+      loTmp[pos] = lo[i];
+      indexTmp[pos] = i;
+    }
+    long[] hiSwap = hi; hi = hiTmp; hiTmp = hiSwap;
+    char[] loSwap = lo; lo = loTmp; loTmp = loSwap;
+    int[] indexSwap = index; index = indexTmp; indexTmp = indexSwap;
+
+    try {
+      for (int p = 0; p < partitions; ++p) {
+        if (start[p + 1] - start[p] > 1) {
+          KeyRadixSort.sort(hi, lo, index, hiTmp, loTmp, indexTmp,
+                            start[p], start[p + 1], 1);
+        }
+      }
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+    return start;
+  }
+
+  /**
+   * Write the buffered records, sorted, to out.
+   * @return the index of the partitions written
+   */
+  private SpillRecord writeSorted(FSDataOutputStream out) throws IOException {
+    int[] start = sortRecords();
+    SpillRecord spillRec = new SpillRecord(partitions);
+    DataInputBuffer key = new DataInputBuffer();
+    DataInputBuffer value = new DataInputBuffer();
+    for (int p = 0; p < partitions; ++p) {
+      long segmentStart = out.getPos();
+      IFile.Writer<Text,Text> writer = new IFile.Writer<Text,Text>(job, out,
+          Text.class, Text.class, codec, spilledRecordsCounter);
+      for (int i = start[p]; i < start[p + 1]; ++i) {
+        int off = index[i] * SLOT;
+        key.reset(data, off, SERIALIZED_KEY);
+        value.reset(data, off + SERIALIZED_KEY, SERIALIZED_VALUE);
+        writer.append(key, value);
+      }
+      writer.close();
+      spillRec.putIndex(new IndexRecord(segmentStart, writer.getRawLength(),
+                                        writer.getCompressedLength()), p);
+    }
+    records = 0;
+    reporter.progress();
+    return spillRec;
+  }
+
+  private long spillSize() {
+    return (long) records * SLOT + partitions * 150L;
+  }
+
+  private Path sortAndSpill(int spill) throws IOException {
+    Path file = mapOutputFile.getSpillFileForWrite(spill, spillSize());
+    FSDataOutputStream out = rfs.create(file);
+    try {
+      spillIndexes.add(writeSorted(out));
+    } finally {
+      out.close();
+    }
+    LOG.info("Finished spill " + spill);
+    return file;
+  }
+
+  public void flush()
+      throws IOException, InterruptedException, ClassNotFoundException {
+    if (spills.isEmpty()) {
+      // everything fits in memory: sort straight into the map output
+      Path file = mapOutputFile.getOutputFileForWrite(spillSize());
+      FSDataOutputStream out = rfs.create(file);
+      SpillRecord spillRec;
+      try {
+        spillRec = writeSorted(out);
+      } finally {
+        out.close();
+      }
+      writeIndex(spillRec, file);
+      return;
+    }
+    if (records > 0) {
+      spills.add(sortAndSpill(spills.size()));
+    }
+    mergeSpills();
+  }
+
+  private void mergeSpills() throws IOException {
+    long size = 0;
+    for (Path spill : spills) {
+      size += rfs.getFileStatus(spill).getLen();
+    }
+    Path file = mapOutputFile.getOutputFileForWrite(size);
+    FSDataOutputStream out = rfs.create(file, true, 4096);
+    SpillRecord spillRec = new SpillRecord(partitions);
+    int mergeFactor = job.getInt(JobContext.IO_SORT_FACTOR, 100);
+    try {
+      for (int p = 0; p < partitions; ++p) {
+        List<Segment<Text,Text>> segments =
+            new ArrayList<Segment<Text,Text>>(spills.size());
+        for (int s = 0; s < spills.size(); ++s) {
+          IndexRecord spillIndex = spillIndexes.get(s).getIndex(p);
+          segments.add(new Segment<Text,Text>(job, rfs, spills.get(s),
+              spillIndex.startOffset, spillIndex.partLength, codec, true));
+        }
+        RawKeyValueIterator kvIter = Merger.merge(job, rfs,
+            Text.class, Text.class, codec, segments, mergeFactor,
+            new Path(mapId.toString()), job.getOutputKeyComparator(),
+            reporter, segments.size() > mergeFactor, null,
+            spilledRecordsCounter, new Progress(), TaskType.MAP);
+
+        long segmentStart = out.getPos();
+        IFile.Writer<Text,Text> writer = new IFile.Writer<Text,Text>(job, out,
+            Text.class, Text.class, codec, spilledRecordsCounter);
+        Merger.writeFile(kvIter, writer, reporter, job);
+        writer.close();
+        spillRec.putIndex(new IndexRecord(segmentStart,
+            writer.getRawLength(), writer.getCompressedLength()), p);
+      }
+    } finally {
+      out.close();
+    }
+    writeIndex(spillRec, file);
+    for (Path spill : spills) {
+      rfs.delete(spill, true);
+    }
+  }
+
+  private void writeIndex(SpillRecord spillRec, Path file) throws IOException {
+    spillRec.writeToFile(mapOutputFile.getOutputIndexFileForWrite(
+        partitions * INDEX_RECORD_LENGTH), job);
+    fileOutputByteCounter.increment(rfs.getFileStatus(file).getLen());
+  }
+
+  public void close() {
+    data = null;
+    partition = null;
+    hi = hiTmp = null;
+    lo = loTmp = null;
+    index = indexTmp = null;
+  }
+}
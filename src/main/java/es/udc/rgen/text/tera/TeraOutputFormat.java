@@ -70,8 +70,7 @@ public class TeraOutputFormat extends FileOutputFormat<Text,Text> {
       this.out = out;
     }
 
-    public synchronized void write(Text key, 
-                                   Text value) throws IOException {
+    public void write(Text key, Text value) throws IOException {
       out.write(key.getBytes(), 0, key.getLength());
       out.write(value.getBytes(), 0, value.getLength());
     }
@@ -20,7 +20,6 @@ package es.udc.rgen.text.tera;
 
 import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.PrintStream;
 import java.net.URI;
 
 import org.apache.hadoop.conf.Configurable;
@@ -29,6 +28,7 @@ import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.MapTask;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.MRJobConfig;
@@ -52,94 +52,97 @@ public class TeraSort extends Configured implements Tool {
   /**
    * A partitioner that splits text keys into roughly equal partitions
    * in a global sorted order.
+   * <p>
+   * The split points are packed as in KeyRadixSort, with the sign bit of
+   * the first 8 bytes flipped so that signed compares order them, and a
+   * flat table maps the first 16 or 20 bits of a key to the range of split
+   * points sharing them. Each record only searches that range, which holds
+   * a couple of split points for evenly spread keys, however many
+   * reducers there are.
    */
   static class TotalOrderPartitioner extends Partitioner<Text,Text>
       implements Configurable {
-    private TrieNode trie;
+    private static final int MIN_PREFIX_BITS = 16;
+    private static final int MAX_PREFIX_BITS = 20;
+
     private Text[] splitPoints;
+    private long[] splitHi;
+    private char[] splitLo;
+    private int prefixShift;
+    private int[] table;
     private Configuration conf;
 
     /**
-     * A generic trie node
+     * The first 8 bytes of a key as a big endian long with its sign bit
+     * flipped, padding short keys with zeros.
      */
-    static abstract class TrieNode {
-      private int level;
-      TrieNode(int level) {
-        this.level = level;
-      }
-      abstract int findPartition(Text key);
-      abstract void print(PrintStream strm) throws IOException;
-      int getLevel() {
-        return level;
+    static long packHi(byte[] bytes, int length) {
+      long hi = 0;
+      for (int i = 0; i < 8; ++i) {
+        hi = (hi << 8) | (i < length ? bytes[i] & 0xff : 0);
       }
+      return hi ^ Long.MIN_VALUE;
     }
 
     /**
-     * An inner trie node that contains 256 children based on the next
-     * character.
+     * Bytes 8 and 9 of a key, padding short keys with zeros.
      */
-    static class InnerTrieNode extends TrieNode {
-      private TrieNode[] child = new TrieNode[256];
-      
-      InnerTrieNode(int level) {
-        super(level);
-      }
-      int findPartition(Text key) {
-        int level = getLevel();
-        if (key.getLength() <= level) {
-          return child[0].findPartition(key);
-        }
-        return child[key.getBytes()[level] & 0xff].findPartition(key);
-      }
-      void setChild(int idx, TrieNode child) {
-        this.child[idx] = child;
-      }
-      void print(PrintStream strm) throws IOException {
-        for(int ch=0; ch < 256; ++ch) {
-          for(int i = 0; i < 2*getLevel(); ++i) {
-            strm.print(' ');
-          }
-          strm.print(ch);
-          strm.println(" ->");
-          if (child[ch] != null) {
-            child[ch].print(strm);
-          }
-        }
+    static char packLo(byte[] bytes, int length) {
+      int lo = 0;
+      for (int i = 8; i < 10; ++i) {
+        lo = (lo << 8) | (i < length ? bytes[i] & 0xff : 0);
       }
+      return (char) lo;
     }
 
     /**
-     * A leaf trie node that does string compares to figure out where the given
-     * key belongs between lower..upper.
+     * Build the prefix table: table[p] is the first split point whose
+     * prefix is not below p, so the split points with prefix p are
+     * table[p] .. table[p+1]-1.
      */
-    static class LeafTrieNode extends TrieNode {
-      int lower;
-      int upper;
-      Text[] splitPoints;
-      LeafTrieNode(int level, Text[] splitPoints, int lower, int upper) {
-        super(level);
-        this.splitPoints = splitPoints;
-        this.lower = lower;
-        this.upper = upper;
+    private void buildTable() {
+      int splits = splitPoints.length;
+      splitHi = new long[splits];
+      splitLo = new char[splits];
+      for (int i = 0; i < splits; ++i) {
+        byte[] bytes = splitPoints[i].getBytes();
+        int length = splitPoints[i].getLength();
+        splitHi[i] = packHi(bytes, length);
+        splitLo[i] = packLo(bytes, length);
       }
-      int findPartition(Text key) {
-        for(int i=lower; i<upper; ++i) {
-          if (splitPoints[i].compareTo(key) > 0) {
-            return i;
-          }
-        }
-        return upper;
+      int bits = MIN_PREFIX_BITS;
+      while (bits < MAX_PREFIX_BITS && (1 << bits) < 4 * splits) {
+        bits += 4;
       }
-      void print(PrintStream strm) throws IOException {
-        for(int i = 0; i < 2*getLevel(); ++i) {
-          strm.print(' ');
+      prefixShift = 64 - bits;
+      table = new int[(1 << bits) + 1];
+      int split = 0;
+      for (int p = 0; p < table.length; ++p) {
+        while (split < splits &&
+               ((splitHi[split] ^ Long.MIN_VALUE) >>> prefixShift) < p) {
+          split += 1;
         }
-        strm.print(lower);
-        strm.print(", ");
-        strm.println(upper);
+        table[p] = split;
       }
     }
 
+    /**
+     * @return the number of split points in [from, to) not greater than key
+     */
+    private int search(int from, int to, long hi, char lo, Text key) {
+      int base = from;
+      int n = to - from;
+      while (n > 0) {
+        int half = n >>> 1;
+        int mid = base + half;
+        boolean notGreater = splitHi[mid] < hi ||
+            (splitHi[mid] == hi && (splitLo[mid] < lo ||
+             (splitLo[mid] == lo && splitPoints[mid].compareTo(key) <= 0)));
+        base = notGreater ? mid + 1 : base;
+        n = notGreater ? n - half - 1 : half;
+      }
+      return base;
+    }
 
     /**
      * Read the cut points from the given sequence file.
@@ -162,54 +165,13 @@ public class TeraSort extends Configured implements Tool {
       return result;
     }
 
-    /**
-     * Given a sorted set of cut points, build a trie that will find the correct
-     * partition quickly.
-     * @param splits the list of cut points
-     * @param lower the lower bound of partitions 0..numPartitions-1
-     * @param upper the upper bound of partitions 0..numPartitions-1
-     * @param prefix the prefix that we have already checked against
-     * @param maxDepth the maximum depth we will build a trie for
-     * @return the trie node that will divide the splits correctly
-     */
-    private static TrieNode buildTrie(Text[] splits, int lower, int upper, 
-                                      Text prefix, int maxDepth) {
-      int depth = prefix.getLength();
-      if (depth >= maxDepth || lower == upper) {
-        return new LeafTrieNode(depth, splits, lower, upper);
-      }
-      InnerTrieNode result = new InnerTrieNode(depth);
-      Text trial = new Text(prefix);
-      // append an extra byte on to the prefix
-      trial.append(new byte[1], 0, 1);
-      int currentBound = lower;
-      for(int ch = 0; ch < 255; ++ch) {
-        trial.getBytes()[depth] = (byte) (ch + 1);
-        lower = currentBound;
-        while (currentBound < upper) {
-          if (splits[currentBound].compareTo(trial) >= 0) {
-            break;
-          }
-          currentBound += 1;
-        }
-        trial.getBytes()[depth] = (byte) ch;
-        result.child[ch] = buildTrie(splits, lower, currentBound, trial, 
-                                     maxDepth);
-      }
-      // pick up the rest
-      trial.getBytes()[depth] = (byte) 255;
-      result.child[255] = buildTrie(splits, currentBound, upper, trial,
-                                    maxDepth);
-      return result;
-    }
-
     public void setConf(Configuration conf) {
       try {
         FileSystem fs = FileSystem.getLocal(conf);
         this.conf = conf;
         Path partFile = new Path(TeraInputFormat.PARTITION_FILENAME);
         splitPoints = readPartitions(fs, partFile, conf);
-        trie = buildTrie(splitPoints, 0, splitPoints.length, new Text(), 2);
+        buildTable();
       } catch (IOException ie) {
         throw new IllegalArgumentException("can't read partitions file", ie);
       }
@@ -223,7 +185,12 @@ public class TeraSort extends Configured implements Tool {
     }
 
     public int getPartition(Text key, Text value, int numPartitions) {
-      return trie.findPartition(key);
+      byte[] bytes = key.getBytes();
+      int length = key.getLength();
+      long hi = packHi(bytes, length);
+      int prefix = (int) ((hi ^ Long.MIN_VALUE) >>> prefixShift);
+      return search(table[prefix], table[prefix + 1], hi,
+                    packLo(bytes, length), key);
     }
     
   }
@@ -270,6 +237,17 @@ public class TeraSort extends Configured implements Tool {
         TeraSortConfigKeys.USE_SIMPLE_PARTITIONER.key(), value);
   }
 
+  public static boolean getUseTeraCollector(JobContext job) {
+    return job.getConfiguration().getBoolean(
+        TeraSortConfigKeys.USE_TERA_COLLECTOR.key(),
+        TeraSortConfigKeys.DEFAULT_USE_TERA_COLLECTOR);
+  }
+
+  public static void setUseTeraCollector(Job job, boolean value) {
+    job.getConfiguration().setBoolean(
+        TeraSortConfigKeys.USE_TERA_COLLECTOR.key(), value);
+  }
+
   public static int getOutputReplication(JobContext job) {
     return job.getConfiguration().getInt(
         TeraSortConfigKeys.OUTPUT_REPLICATION.key(),
@@ -326,6 +304,13 @@ public class TeraSort extends Configured implements Tool {
       System.out.println("Spent " + (end - start) + "ms computing partitions.");
       job.setPartitionerClass(TotalOrderPartitioner.class);
     }
+    if (getUseTeraCollector(job)) {
+      // MapOutputBuffer takes over if the job does not suit the collector
+      job.getConfiguration().setStrings(
+          MRJobConfig.MAP_OUTPUT_COLLECTOR_CLASS_ATTR,
+          TeraMapOutputCollector.class.getName(),
+          MapTask.MapOutputBuffer.class.getName());
+    }
     
     job.getConfiguration().setInt("dfs.replication", getOutputReplication(job));
     int ret = job.waitForCompletion(true) ? 0 : 1;
@@ -43,13 +43,29 @@ public enum TeraSortConfigKeys {
       "Perform a disk-persisting hsync at end of every file-write."),
 
   USE_TERA_SCHEDULER("mapreduce.terasort.use.terascheduler",
-      "Use TeraScheduler for computing input split distribution."),
+      "Use LocalityScheduler for computing input split distribution."),
+
+  USE_TERA_COLLECTOR("mapreduce.terasort.use.teracollector",
+      "Use TeraMapOutputCollector to radix sort the map outputs."),
 
   USE_SIMPLE_PARTITIONER("mapreduce.terasort.simplepartitioner",
       "Use SimplePartitioner instead of TotalOrderPartitioner."),
 
   OUTPUT_REPLICATION("mapreduce.terasort.output.replication",
-      "Replication factor to use for output data files.");
+      "Replication factor to use for output data files."),
+
+  GEN_BLOCK_ROWS("mapreduce.teragen.block.rows",
+      "Rows generated and written at once by each teragen map."),
+
+  GEN_THREADS("mapreduce.teragen.threads",
+      "Threads sharing the generation of each teragen block."),
+
+  VALIDATE_CHUNK_SIZE("mapreduce.teravalidate.chunk.size",
+      "Bytes validated by each teravalidate map or thread."),
+
+  CHECKSUM("mapreduce.terasort.checksum",
+      "Per record checksum: crc32, or crc32c (Java 9+, not comparable " +
+      "with crc32 sums).");
 
   private String confName;
   private String description;
@@ -72,6 +88,10 @@ public enum TeraSortConfigKeys {
   public static final long DEFAULT_SAMPLE_SIZE = 100000L;
   public static final boolean DEFAULT_FINAL_SYNC_ATTRIBUTE = true;
   public static final boolean DEFAULT_USE_TERA_SCHEDULER = true;
+  public static final boolean DEFAULT_USE_TERA_COLLECTOR = true;
   public static final boolean DEFAULT_USE_SIMPLE_PARTITIONER = false;
   public static final int DEFAULT_OUTPUT_REPLICATION = 1;
+  public static final int DEFAULT_GEN_BLOCK_ROWS = 10000;
+  public static final int DEFAULT_GEN_THREADS = 1;
+  public static final String DEFAULT_CHECKSUM = RecordChecksum.CRC32;
 }
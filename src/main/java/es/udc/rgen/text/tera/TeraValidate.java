@@ -18,40 +18,66 @@
 
 package es.udc.rgen.text.tera;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.Checksum;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
-import org.apache.hadoop.util.PureJavaCrc32;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 
 /**
- * Generate 1 mapper per a file that checks to make sure the keys
- * are sorted within each file. The mapper also generates 
- * "$file:begin", first key and "$file:end", last key. The reduce verifies that
- * all of the start/end items are in order.
- * Any output from the reduce is problem report.
+ * Checks that the keys of the sorted output are in order, within and across
+ * its files, and sums the record checksums.
+ * <p>
+ * Each file is validated in byte range chunks (the input splits, or
+ * mapreduce.teravalidate.chunk.size bytes) that only record their first and
+ * last keys, the misorders inside them and their checksum. The chunk
+ * summaries are then stitched in order: appending a summary to the one
+ * before it checks the boundary between them, and since appending is
+ * associative the chunks can be validated in any order and in parallel.
  * <p>
  * To run the program: 
  * <b>bin/hadoop jar hadoop-*-examples.jar teravalidate out-dir report-dir</b>
  * <p>
- * If there is any output, something is wrong and the output of the reduce
- * will have the problem report.
+ * If there is any output other than the checksum, something is wrong and
+ * the output of the reduce will have the problem report.
+ * <p>
+ * With <b>teravalidate -local out-dir [threads]</b> the chunks are
+ * validated by a pool of threads reading straight from the file system,
+ * without a job, and the report is printed.
  */
 public class TeraValidate extends Configured implements Tool {
   private static final Text ERROR = new Text("error");
   private static final Text CHECKSUM = new Text("checksum");
+
+  static final long DEFAULT_LOCAL_CHUNK_SIZE = 128L * 1024 * 1024;
   
   private static String textifyBytes(Text t) {
     BytesWritable b = new BytesWritable();
@@ -59,35 +85,93 @@ public class TeraValidate extends Configured implements Tool {
     return b.toString();
   }
 
-  static class ValidateMapper extends Mapper<Text,Text,Text,Text> {
-    private Text lastKey;
-    private String filename;
+  /**
+   * Identifies a chunk by its file name and start offset, which sorts the
+   * chunks in the order of the output.
+   */
+  static class ChunkId implements WritableComparable<ChunkId> {
+    private Text file = new Text();
+    private long start;
+
+    ChunkId() {
+    }
+
+    ChunkId(String file, long start) {
+      this.file.set(file);
+      this.start = start;
+    }
+
+    public void write(DataOutput out) throws IOException {
+      file.write(out);
+      out.writeLong(start);
+    }
+
+    public void readFields(DataInput in) throws IOException {
+      file.readFields(in);
+      start = in.readLong();
+    }
+
+    public int compareTo(ChunkId other) {
+      int cmp = file.compareTo(other.file);
+      if (cmp != 0) {
+        return cmp;
+      }
+      return start < other.start ? -1 : (start == other.start ? 0 : 1);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof ChunkId && compareTo((ChunkId) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return file.hashCode() * 31 + (int) (start ^ (start >>> 32));
+    }
+
+    public String toString() {
+      return file + "@" + start;
+    }
+  }
+
+  /**
+   * Summary of one or more consecutive validated chunks.
+   */
+  static class ChunkSummary implements Writable {
+    private long records = 0;
+    private Text first = new Text();
+    private Text last = new Text();
     private Unsigned16 checksum = new Unsigned16();
+    private long misorders = 0;
+    private Text firstError = new Text();
     private Unsigned16 tmp = new Unsigned16();
-    private Checksum crc32 = new PureJavaCrc32();
+    private Checksum crc32;
+    private String name;
 
-    /**
-     * Get the final part of the input name
-     * @param split the input split
-     * @return the "part-r-00000" for the input
-     */
-    private String getFilename(FileSplit split) {
-      return split.getPath().getName();
+    ChunkSummary() {
     }
 
-    public void map(Text key, Text value, Context context) 
-        throws IOException, InterruptedException {
-      if (lastKey == null) {
-        FileSplit fs = (FileSplit) context.getInputSplit();
-        filename = getFilename(fs);
-        context.write(new Text(filename + ":begin"), key);
-        lastKey = new Text();
-      } else {
-        if (key.compareTo(lastKey) < 0) {
-          context.write(ERROR, new Text("misorder in " + filename + 
-                                         " between " + textifyBytes(lastKey) + 
-                                         " and " + textifyBytes(key)));
-        }
+    ChunkSummary(String name, Checksum crc32) {
+      this.name = name;
+      this.crc32 = crc32;
+    }
+
+    private void misorder(String message) {
+      if (misorders == 0) {
+        firstError.set(message);
+      }
+      misorders += 1;
+    }
+
+    /**
+     * Validate the next record of the chunk.
+     */
+    void add(Text key, Text value) {
+      if (records == 0) {
+        first.set(key);
+      } else if (key.compareTo(last) < 0) {
+        misorder("misorder in " + name + " between " + textifyBytes(last) +
+                 " and " + textifyBytes(key));
       }
       // compute the crc of the key and value and add it to the sum
       crc32.reset();
@@ -95,67 +179,203 @@ public class TeraValidate extends Configured implements Tool {
       crc32.update(value.getBytes(), 0, value.getLength());
       tmp.set(crc32.getValue());
       checksum.add(tmp);
-      lastKey.set(key);
+      last.set(key);
+      records += 1;
+    }
+
+    /**
+     * Append the summary of the chunks that follow these ones, checking
+     * the keys at the boundary.
+     */
+    void append(ChunkSummary next, String boundary) {
+      if (next.records == 0) {
+        return;
+      }
+      if (records == 0) {
+        first.set(next.first);
+      } else if (next.first.compareTo(last) < 0) {
+        misorder("bad key partitioning at " + boundary + " between " +
+                 textifyBytes(last) + " and " + textifyBytes(next.first));
+      }
+      if (next.misorders > 0) {
+        if (misorders == 0) {
+          firstError.set(next.firstError);
+        }
+        misorders += next.misorders;
+      }
+      last.set(next.last);
+      checksum.add(next.checksum);
+      records += next.records;
+    }
+
+    /**
+     * @return the problem report, empty if there is none
+     */
+    String getError() {
+      if (misorders == 0) {
+        return "";
+      }
+      return misorders == 1 ? firstError.toString()
+          : firstError + " (and " + (misorders - 1) + " more misorders)";
+    }
+
+    public void write(DataOutput out) throws IOException {
+      out.writeLong(records);
+      first.write(out);
+      last.write(out);
+      checksum.write(out);
+      out.writeLong(misorders);
+      firstError.write(out);
+    }
+
+    public void readFields(DataInput in) throws IOException {
+      records = in.readLong();
+      first.readFields(in);
+      last.readFields(in);
+      checksum.readFields(in);
+      misorders = in.readLong();
+      firstError.readFields(in);
+    }
+  }
+
+  static class ValidateMapper
+      extends Mapper<Text,Text,ChunkId,ChunkSummary> {
+    private ChunkId chunk;
+    private ChunkSummary summary;
+
+    @Override
+    protected void setup(Context context) {
+      FileSplit split = (FileSplit) context.getInputSplit();
+      chunk = new ChunkId(split.getPath().getName(), split.getStart());
+      summary = new ChunkSummary(chunk.toString(),
+          RecordChecksum.newChecksum(context.getConfiguration()));
+    }
+
+    public void map(Text key, Text value, Context context) {
+      summary.add(key, value);
     }
     
     public void cleanup(Context context) 
         throws IOException, InterruptedException  {
-      if (lastKey != null) {
-        context.write(new Text(filename + ":end"), lastKey);
-        context.write(CHECKSUM, new Text(checksum.toString()));
-      }
+      context.write(chunk, summary);
     }
   }
 
   /**
-   * Check the boundaries between the output files by making sure that the
-   * boundary keys are always increasing.
-   * Also passes any error reports along intact.
+   * Stitch the chunk summaries, which arrive in output order, and report
+   * their problems and total checksum.
    */
-  static class ValidateReducer extends Reducer<Text,Text,Text,Text> {
-    private boolean firstKey = true;
-    private Text lastKey = new Text();
-    private Text lastValue = new Text();
-    public void reduce(Text key, Iterable<Text> values,
+  static class ValidateReducer
+      extends Reducer<ChunkId,ChunkSummary,Text,Text> {
+    private ChunkSummary total = new ChunkSummary();
+
+    public void reduce(ChunkId key, Iterable<ChunkSummary> values,
         Context context) throws IOException, InterruptedException  {
-      if (ERROR.equals(key)) {
-        for (Text val : values) {
-          context.write(key, val);
-        }
-      } else if (CHECKSUM.equals(key)) {
-        Unsigned16 tmp = new Unsigned16();
-        Unsigned16 sum = new Unsigned16();
-        for (Text val : values) {
-          tmp.set(val.toString());
-          sum.add(tmp);
-        }
-        context.write(CHECKSUM, new Text(sum.toString()));
-      } else {
-        Text value = values.iterator().next();
-        if (firstKey) {
-          firstKey = false;
-        } else {
-          if (value.compareTo(lastValue) < 0) {
-            context.write(ERROR, 
-                           new Text("bad key partitioning:\n  file " + 
-                                    lastKey + " key " + 
-                                    textifyBytes(lastValue) +
-                                    "\n  file " + key + " key " + 
-                                    textifyBytes(value)));
+      for (ChunkSummary value : values) {
+        total.append(value, key.toString());
+      }
+    }
+
+    public void cleanup(Context context)
+        throws IOException, InterruptedException {
+      if (total.misorders > 0) {
+        context.write(ERROR, new Text(total.getError()));
+      }
+      context.write(CHECKSUM, new Text(total.checksum.toString()));
+    }
+  }
+
+  private static long getChunkSize(Configuration conf, long defaultSize) {
+    return conf.getLong(TeraSortConfigKeys.VALIDATE_CHUNK_SIZE.key(),
+                        defaultSize);
+  }
+
+  /**
+   * Validate the output in dir with a pool of threads, without a job.
+   * @return the stitched summary of all the output
+   */
+  static ChunkSummary validateLocal(final Configuration conf, Path dir,
+                                    int threads) throws Exception {
+    FileSystem fs = dir.getFileSystem(conf);
+    List<FileStatus> files = new ArrayList<FileStatus>();
+    for (FileStatus file : fs.listStatus(dir)) {
+      String name = file.getPath().getName();
+      if (!file.isDirectory() && !name.startsWith("_") &&
+          !name.startsWith(".")) {
+        files.add(file);
+      }
+    }
+    FileStatus[] sorted = files.toArray(new FileStatus[files.size()]);
+    Arrays.sort(sorted);
+
+    long chunkSize = getChunkSize(conf, DEFAULT_LOCAL_CHUNK_SIZE);
+    if (chunkSize <= 0) {
+      chunkSize = DEFAULT_LOCAL_CHUNK_SIZE;
+    }
+    List<Callable<ChunkSummary>> chunks =
+        new ArrayList<Callable<ChunkSummary>>();
+    final List<String> names = new ArrayList<String>();
+    for (FileStatus file : sorted) {
+      for (long start = 0; start < file.getLen(); start += chunkSize) {
+        final FileSplit split = new FileSplit(file.getPath(), start,
+            Math.min(chunkSize, file.getLen() - start), new String[0]);
+        final String name = file.getPath().getName() + "@" + start;
+        names.add(name);
+        chunks.add(new Callable<ChunkSummary>() {
+          public ChunkSummary call() throws Exception {
+            TaskAttemptContext context =
+                new TaskAttemptContextImpl(conf, new TaskAttemptID());
+            ChunkSummary summary = new ChunkSummary(name,
+                RecordChecksum.newChecksum(conf));
+            RecordReader<Text,Text> reader =
+                new TeraInputFormat.TeraRecordReader();
+            reader.initialize(split, context);
+            try {
+              while (reader.nextKeyValue()) {
+                summary.add(reader.getCurrentKey(), reader.getCurrentValue());
+              }
+            } finally {
+              reader.close();
+            }
+            return summary;
           }
-        }
-        lastKey.set(key);
-        lastValue.set(value);
+        });
       }
     }
-    
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<ChunkSummary>> results = pool.invokeAll(chunks);
+      ChunkSummary total = new ChunkSummary();
+      for (int i = 0; i < results.size(); ++i) {
+        total.append(results.get(i).get(), names.get(i));
+      }
+      return total;
+    } finally {
+      pool.shutdownNow();
+    }
   }
 
   private static void usage() throws IOException {
     System.err.println("teravalidate <out-dir> <report-dir>");
+    System.err.println("teravalidate -local <out-dir> [threads]");
+  }
+
+  private int runLocal(String[] args) throws Exception {
+    int threads = args.length > 2 ? Integer.parseInt(args[2])
+        : Runtime.getRuntime().availableProcessors();
+    ChunkSummary total = validateLocal(getConf(), new Path(args[1]), threads);
+    if (total.misorders > 0) {
+      System.out.println(ERROR + "\t" + total.getError());
+    }
+    System.out.println(CHECKSUM + "\t" + total.checksum);
+    return total.misorders > 0 ? 1 : 0;
   }
 
   public int run(String[] args) throws Exception {
+    if (args.length >= 2 && args.length <= 3 && "-local".equals(args[0])) {
+      return runLocal(args);
+    }
     Job job = Job.getInstance(getConf());
     if (args.length != 2) {
       usage();
@@ -167,12 +387,16 @@ public class TeraValidate extends Configured implements Tool {
     job.setJarByClass(TeraValidate.class);
     job.setMapperClass(ValidateMapper.class);
     job.setReducerClass(ValidateReducer.class);
+    job.setMapOutputKeyClass(ChunkId.class);
+    job.setMapOutputValueClass(ChunkSummary.class);
     job.setOutputKeyClass(Text.class);
     job.setOutputValueClass(Text.class);
     // force a single reducer
     job.setNumReduceTasks(1);
-    // force a single split 
-    FileInputFormat.setMinInputSplitSize(job, Long.MAX_VALUE);
+    long chunkSize = getChunkSize(job.getConfiguration(), 0);
+    if (chunkSize > 0) {
+      FileInputFormat.setMaxInputSplitSize(job, chunkSize);
+    }
     job.setInputFormatClass(TeraInputFormat.class);
     return job.waitForCompletion(true) ? 0 : 1;
   }
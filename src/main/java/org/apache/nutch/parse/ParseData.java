@@ -35,7 +35,16 @@ public class ParseData extends VersionedWritable {
 	public byte getVersion() {
 		return version;
 	}
-	
+
+	/** The title of the page. */
+	public String getTitle() { return title; }
+
+	/** The outlinks of the page. */
+	public Outlink[] getOutlinks() { return outlinks; }
+
+	/** The original Metadata retrieved from content */
+	public Metadata getContentMeta() { return contentMeta; }
+
 	public final void readFields(DataInput in) throws IOException {
 
 		version = in.readByte();
@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.udc.rgen.text.tera;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the ascii keys of GenSort against the BigInteger arithmetic it
+ * used before, for the high and the low 8 bytes of the random number.
+ */
+public class TestGenSort extends TestCase {
+
+  private static final BigInteger NINETY_FIVE = BigInteger.valueOf(95);
+  private static final BigInteger TWO_64 = BigInteger.ONE.shiftLeft(64);
+
+  private static BigInteger unsigned(long x) {
+    BigInteger big = BigInteger.valueOf(x);
+    return x < 0 ? big.add(TWO_64) : big;
+  }
+
+  /** The 10 key bytes as the BigInteger version of generateAsciiRecord made them. */
+  private static byte[] bigIntegerKey(long high, long low) {
+    byte[] key = new byte[10];
+    BigInteger temp = unsigned(high);
+    for (int i = 0; i < 8; ++i) {
+      key[i] = (byte) (' ' + temp.mod(NINETY_FIVE).intValue());
+      temp = temp.divide(NINETY_FIVE);
+    }
+    temp = unsigned(low);
+    key[8] = (byte) (' ' + temp.mod(NINETY_FIVE).intValue());
+    temp = temp.divide(NINETY_FIVE);
+    key[9] = (byte) (' ' + temp.mod(NINETY_FIVE).intValue());
+    return key;
+  }
+
+  private static void checkKey(long high, long low) {
+    Unsigned16 rand = new Unsigned16(String.format("%016x%016x", high, low));
+    byte[] record = new byte[100];
+    GenSort.generateAsciiRecord(record, rand, new Unsigned16(0));
+    byte[] expected = bigIntegerKey(high, low);
+    byte[] actual = Arrays.copyOf(record, 10);
+    assertTrue("key of " + rand + ": expected " + Arrays.toString(expected)
+        + " but was " + Arrays.toString(actual), Arrays.equals(expected, actual));
+  }
+
+  private static void checkBoth(long x) {
+    checkKey(x, 0);
+    checkKey(0, x);
+    checkKey(x, x);
+  }
+
+  public void testEdgeValues() {
+    long[] values = {0, 1, -1, 94, 95, 96, Long.MIN_VALUE, Long.MAX_VALUE,
+        Long.MIN_VALUE + 1, Long.MAX_VALUE - 1};
+    for (long x : values) {
+      checkBoth(x);
+    }
+  }
+
+  public void testMultiplesOf95() {
+    // the largest unsigned multiple of 95 and its neighbours
+    long top = TWO_64.subtract(BigInteger.ONE).divide(NINETY_FIVE)
+        .multiply(NINETY_FIVE).longValue();
+    long[] multiples = {95 * 2, 95L * 1000003, (Long.MAX_VALUE / 95) * 95,
+        (Long.MAX_VALUE / 95 + 1) * 95, top, top - 95};
+    for (long x : multiples) {
+      checkBoth(x - 1);
+      checkBoth(x);
+      checkBoth(x + 1);
+    }
+  }
+
+  public void testRandomValues() {
+    Random random = new Random(95);
+    for (int i = 0; i < 100000; ++i) {
+      checkKey(random.nextLong(), random.nextLong());
+    }
+  }
+}